@@ -0,0 +1,118 @@
+package de.nickkel.lupobot.benchmarks;
+
+import de.nickkel.lupobot.core.command.CommandParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// the command listener before and after CommandParser on the same mix of guild messages, run with -prof gc for the allocations
+// most messages are no command, some mention the bot, use the prefix or contain it in the middle
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+
+    private static final String PREFIX = "!", SELF_ID = "812345678901234567", MENTION = "<@" + SELF_ID + ">";
+    private static final String[] MIX = {
+            "hello everyone, is anyone here?",
+            "lol",
+            "did you see the match yesterday? that was insane",
+            "can someone help me with my setup, the bot does not answer",
+            "ok",
+            "wait what!",
+            "check this out https://example.com/some/page?with=query",
+            "i think the new update broke something :(",
+            "good morning",
+            "this is a longer message with a lot of words which is typed by someone who writes whole paragraphs in the chat",
+            "hey! did anyone get the daily reward already?",
+            "yes",
+            "<@!" + SELF_ID + "> what can you do?",
+            MENTION + " help",
+            "!level",
+            "!ranking 2",
+            "!ban @someone spamming in every channel",
+            "!levelupmessage Congrats %member%,  you reached level %level%!",
+            "!help ",
+            "! not a command"
+    };
+
+    private String[] messages;
+    private int next;
+
+    @Param({"1024"})
+    private int size;
+
+    @Setup
+    public void setup() {
+        this.messages = new String[this.size];
+        for (int i = 0; i < this.size; i++) {
+            // spread evenly instead of grouped, so the branches are not predicted by order
+            this.messages[i] = MIX[(int) (((i*0x9E3779B9L) >>> 16) % MIX.length)];
+        }
+    }
+
+    private String nextMessage() {
+        if (++this.next == this.messages.length) {
+            this.next = 0;
+        }
+        return this.messages[this.next];
+    }
+
+    // CommandListener before CommandParser
+    @Benchmark
+    public void previous(Blackhole blackhole) {
+        String content = this.nextMessage();
+        if (content.replace("!", "").startsWith(MENTION)) {
+            blackhole.consume(MENTION);
+        }
+        if (!content.startsWith(PREFIX) || content.equals(PREFIX)) {
+            return;
+        }
+
+        String label = content.replace(PREFIX, "").split(" ")[0];
+        String message = content.replace(PREFIX, "").replace(label, "");
+        if (message.startsWith(" ")) {
+            message = message.substring(1);
+        }
+        String[] args = message.split(" ");
+        if (Arrays.toString(args).equals("[]")) {
+            args = new String[0];
+        }
+        blackhole.consume(label);
+        blackhole.consume(args);
+    }
+
+    // CommandListener with CommandParser, label and args are turned into strings for the command context
+    @Benchmark
+    public void parser(Blackhole blackhole) {
+        String content = this.nextMessage();
+        if (CommandParser.startsWithMention(content, SELF_ID)) {
+            blackhole.consume(MENTION);
+        }
+        CommandParser parser = CommandParser.parse(content, PREFIX);
+        if (parser == null) {
+            return;
+        }
+        blackhole.consume(parser.getLabel().toString());
+        blackhole.consume(parser.getArgs());
+    }
+
+    // only the views, without copying label and args
+    @Benchmark
+    public void parserViews(Blackhole blackhole) {
+        String content = this.nextMessage();
+        CommandParser parser = CommandParser.parse(content, PREFIX);
+        if (parser == null) {
+            return;
+        }
+        blackhole.consume(parser.getLabel());
+        for (int i = 0; i < parser.getArgCount(); i++) {
+            blackhole.consume(parser.getArg(i));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package de.nickkel.lupobot.benchmarks;
+
+import de.nickkel.lupobot.plugin.leveling.data.GuildLevels;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// xp of a message for a member of a loaded guild, run with -prof gc to see the allocations per award
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuildLevelsBenchmark {
+
+    @Param({"1000", "100000"})
+    private int members;
+
+    private GuildLevels levels;
+    private long[] users;
+    private int next;
+    private long now;
+
+    @Setup
+    public void setup() {
+        this.levels = new GuildLevels(1, Collections.emptyList());
+        this.users = new long[this.members];
+        for (int i = 0; i < this.members; i++) {
+            this.users[i] = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+            this.levels.award(this.users[i], ThreadLocalRandom.current().nextInt(100000), 0, 0, false);
+        }
+    }
+
+    private long nextUser() {
+        if (++this.next == this.users.length) {
+            this.next = 0;
+        }
+        return this.users[this.next];
+    }
+
+    // every message gets xp and moves the member in the ranking
+    @Benchmark
+    public long award() {
+        return this.levels.award(this.nextUser(), 20, this.now++, 0, true);
+    }
+
+    // most messages are within the cooldown of their member
+    @Benchmark
+    public long awardWithinCooldown() {
+        return this.levels.award(this.nextUser(), 20, this.now, Long.MAX_VALUE/2, true);
+    }
+}
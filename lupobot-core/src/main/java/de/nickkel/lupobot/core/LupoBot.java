@@ -4,22 +4,32 @@ import com.github.ygimenez.exception.InvalidHandlerException;
 import com.github.ygimenez.method.Pages;
 import com.github.ygimenez.model.PaginatorBuilder;
 import com.google.gson.JsonObject;
-import com.mongodb.*;
-import com.mongodb.util.JSON;
+import com.mongodb.BasicDBObject;
 import de.nickkel.lupobot.core.command.CommandHandler;
 import de.nickkel.lupobot.core.command.CommandListener;
+import de.nickkel.lupobot.core.command.CommandRegistry;
 import de.nickkel.lupobot.core.command.LupoCommand;
 import de.nickkel.lupobot.core.config.Document;
+import de.nickkel.lupobot.core.data.DataStore;
+import de.nickkel.lupobot.core.data.DataTemplate;
+import de.nickkel.lupobot.core.data.EntityDataRegistry;
+import de.nickkel.lupobot.core.data.DirtyTracker;
+import de.nickkel.lupobot.core.data.EntityCache;
+import de.nickkel.lupobot.core.data.Journal;
+import de.nickkel.lupobot.core.data.JournalTracker;
 import de.nickkel.lupobot.core.data.LupoServer;
 import de.nickkel.lupobot.core.data.LupoUser;
+import de.nickkel.lupobot.core.data.SaveStatistics;
 import de.nickkel.lupobot.core.internal.listener.MaintenanceListener;
 import de.nickkel.lupobot.core.language.LanguageHandler;
+import de.nickkel.lupobot.core.message.MessageScheduler;
 import de.nickkel.lupobot.core.pagination.PaginationListener;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
 import de.nickkel.lupobot.core.plugin.PluginLoader;
 import de.nickkel.lupobot.core.rest.RestServer;
 import de.nickkel.lupobot.core.tasks.SaveDataTask;
 import de.nickkel.lupobot.core.util.FileResourcesUtils;
+import de.nickkel.lupobot.core.util.StaffIndex;
 import lombok.Getter;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Activity;
@@ -27,13 +37,20 @@ import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.SelfUser;
 import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
 import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.security.auth.login.LoginException;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class LupoBot {
 
@@ -52,23 +69,36 @@ public class LupoBot {
     @Getter
     private Document config, userConfig, serverConfig;
     @Getter
-    private MongoClient mongoClient;
+    private DataStore dataStore;
+    @Getter
+    private Journal journal;
+    @Getter
+    private DataTemplate userTemplate, serverTemplate, botTemplate;
+    @Getter
+    private final EntityDataRegistry entityDataRegistry = new EntityDataRegistry();
     @Getter
     private List<String> commandLineArgs;
     @Getter
     private BasicDBObject data;
+    private final DirtyTracker dirty = new DirtyTracker();
+    private JournalTracker journalTracker;
+    @Getter
+    private final List<LupoPlugin> plugins = new CopyOnWriteArrayList<>();
+    private volatile Map<String, LupoPlugin> pluginIndex = Collections.emptyMap();
     @Getter
-    private final List<LupoPlugin> plugins = new ArrayList<>();
+    private final CommandRegistry commandRegistry = new CommandRegistry();
     @Getter
-    private final List<LupoCommand> commands = new ArrayList<>();
+    private StaffIndex staffIndex;
     @Getter
-    private final Map<Guild, LupoServer> servers = new HashMap<>();
+    private MessageScheduler messageScheduler;
     @Getter
-    private final Map<Long, LupoUser> users = new HashMap<>();
+    private EntityCache<LupoServer> servers;
     @Getter
-    private final List<LupoServer> saveQueuedServers = new ArrayList<>();
+    private EntityCache<LupoUser> users;
     @Getter
-    private final List<LupoUser> saveQueuedUsers = new ArrayList<>();
+    private final Set<LupoServer> saveQueuedServers = ConcurrentHashMap.newKeySet();
+    @Getter
+    private final Set<LupoUser> saveQueuedUsers = ConcurrentHashMap.newKeySet();
     @Getter
     private final List<String> availableLanguages = new ArrayList<>();
     @Getter
@@ -77,6 +107,25 @@ public class LupoBot {
     private RestServer restServer;
     @Getter
     private Timer dataServer;
+    @Getter
+    private final SaveStatistics saveStatistics = new SaveStatistics();
+    private int dataThreadNumber = 0;
+    private static final ThreadLocal<Boolean> DATA_THREAD = ThreadLocal.withInitial(() -> false);
+    @Getter
+    private final ExecutorService dataService = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+        Thread thread = new Thread(() -> {
+            DATA_THREAD.set(true);
+            r.run();
+        });
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> this.logger.error("An unexpected exception occurred in " + t.getName() + ":", e));
+        thread.setName("Data Thread #" + this.dataThreadNumber++);
+        return thread;
+    });
+
+    public static boolean isDataThread() {
+        return DATA_THREAD.get();
+    }
 
     public static void main(String[] args) {
         new LupoBot().run(args);
@@ -100,15 +149,32 @@ public class LupoBot {
 
         this.userConfig = new Document(new FileResourcesUtils(this.getClass()).getFileFromResourceAsStream("user.json"));
         this.serverConfig = new Document(new FileResourcesUtils(this.getClass()).getFileFromResourceAsStream("server.json"));
+        this.userTemplate = new DataTemplate(this.userConfig, LupoPlugin::getUserConfig);
+        this.serverTemplate = new DataTemplate(this.serverConfig, LupoPlugin::getServerConfig);
+        this.botTemplate = new DataTemplate(new Document(new FileResourcesUtils(this.getClass()).getFileFromResourceAsStream("bot.json")), LupoPlugin::getBotConfig);
+        this.servers = new EntityCache<>("servers", 10000, 60, server -> this.saveQueuedServers.remove(server) ? server.saveData() : null);
+        this.users = new EntityCache<>("users", 50000, 30, user -> this.saveQueuedUsers.remove(user) ? user.saveData() : null);
 
+        // role events of the hub keep the staff index up to date, they need the members intent and are only fired for cached members
+        // so only the members of the hub are chunked and cached, the other guilds keep the default
+        long hubId = this.config.getLong("supportServer");
+        this.staffIndex = new StaffIndex(hubId, this.config.getJsonElement("staffGroups").getAsJsonObject());
         DefaultShardManagerBuilder builder = DefaultShardManagerBuilder.createDefault(this.config.getString("token"))
-                .setChunkingFilter(ChunkingFilter.ALL)
+                .enableIntents(GatewayIntent.GUILD_MEMBERS)
+                .setChunkingFilter(ChunkingFilter.include(hubId))
+                .setMemberCachePolicy(MemberCachePolicy.DEFAULT.or(member -> member.getGuild().getIdLong() == hubId))
+                .addEventListeners(this.staffIndex)
                 .setActivity(Activity.watching(this.config.getString("activity")));
 
+        this.messageScheduler = new MessageScheduler(this.config.has("messages") ? this.config.getJsonElement("messages").getAsJsonObject() : new JsonObject());
         this.languageHandler = new LanguageHandler(this.getClass());
         this.commandHandler = new CommandHandler();
+        this.commandHandler.getCooldownService().load();
 
-        this.mongoClient = new MongoClient(new MongoClientURI((LupoBot.getInstance().getConfig().getJsonElement("database").getAsJsonObject()).get("clientUri").getAsString()));
+        this.dataStore = new DataStore(this.config.getJsonElement("database").getAsJsonObject());
+        this.journal = new Journal(this.config.has("journal") ? this.config.getJsonElement("journal").getAsJsonObject() : null);
+        this.journal.replay(this.dataStore); // before anything is loaded, changes of the last run have to be in the database
+        this.journal.start();
         this.login(builder);
 
         try {
@@ -142,12 +208,41 @@ public class LupoBot {
         return this.shardManager.getGuildById(this.config.getLong("supportServer"));
     }
 
+    public List<LupoCommand> getCommands() {
+        return this.commandRegistry.getCommands();
+    }
+
+    // also resolves aliases
     public LupoCommand getCommand(String name) {
-        return this.commands.stream().filter((command -> command.getInfo().name().equalsIgnoreCase(name))).findFirst().orElse(null);
+        return this.commandRegistry.get(name);
     }
 
     public LupoPlugin getPlugin(String name) {
-        return this.plugins.stream().filter((plugin -> plugin.getInfo().name().equalsIgnoreCase(name))).findFirst().orElse(null);
+        return this.pluginIndex.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public synchronized void addPlugin(LupoPlugin plugin) {
+        this.plugins.add(plugin);
+        this.indexPlugins();
+    }
+
+    public synchronized void removePlugin(LupoPlugin plugin) {
+        this.plugins.remove(plugin);
+        this.indexPlugins();
+    }
+
+    private void indexPlugins() {
+        Map<String, LupoPlugin> pluginIndex = new HashMap<>();
+        for (LupoPlugin plugin : this.plugins) {
+            pluginIndex.putIfAbsent(plugin.getInfo().name().toLowerCase(Locale.ROOT), plugin);
+        }
+        this.pluginIndex = pluginIndex;
+    }
+
+    public void compileTemplates() {
+        this.userTemplate.compile();
+        this.serverTemplate.compile();
+        this.botTemplate.compile();
     }
 
     public SelfUser getSelfUser() {
@@ -159,51 +254,35 @@ public class LupoBot {
         return dbObject.get(key);
     }
 
+    // has to be called after changing data in place, e.g. a nested object returned by getPluginData
+    public void markDirty(String path) {
+        this.dirty.mark(path);
+        this.journalTracker.mark(path);
+    }
+
+    public void markDirty(LupoPlugin plugin, String key) {
+        this.markDirty(plugin.getInfo().name() + "." + key);
+    }
+
     private void loadBotData() {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("bot");
-        DBObject query = new BasicDBObject("_id", this.getSelfUser().getIdLong());
-        DBCursor cursor = collection.find(query);
-        Document botConfig = new Document(new FileResourcesUtils(this.getClass()).getFileFromResourceAsStream("bot.json"));
-        try {
-            BasicDBObject dbObject = (BasicDBObject) JSON.parse(botConfig.convertToJsonString());
-            dbObject.append("_id", this.getSelfUser().getIdLong());
-            collection.insert(dbObject);
-            this.data = dbObject;
-        } catch(DuplicateKeyException e) {
-            this.data = (BasicDBObject) cursor.one();
-        }
+        this.data = this.dataStore.findOrCreate("bot", this.botTemplate.create(this.getSelfUser().getIdLong())).join(); // only once on startup
+        this.journalTracker = new JournalTracker("bot", this.getSelfUser().getIdLong(), () -> this.data, () -> {});
+        this.botTemplate.merge(this.data, this::markDirty);
+    }
 
-        // merge missing core data
-        for (String key : botConfig.getJsonObject().keySet()) {
-            if (!this.data.containsKey(key)) {
-                this.data.append(key, JSON.parse(new Document(botConfig.getJsonElement(key).getAsJsonObject()).convertToJsonString()));
+    public CompletableFuture<Void> saveData() {
+        return this.journal.track(() -> {
+            BasicDBObject update = this.dirty.drain(this.data);
+            if (update.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
             }
-        }
 
-        // merge missing plugin data
-        for (LupoPlugin plugin : LupoBot.getInstance().getPlugins()) {
-            if (plugin.getBotConfig() != null) {
-                if (!this.data.containsKey(plugin.getInfo().name())) {
-                    this.data.append(plugin.getInfo().name(), JSON.parse(new Document(plugin.getBotConfig().getJsonObject()).convertToJsonString()));
-                } else {
-                    BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
-                    for (String key : plugin.getBotConfig().getJsonObject().keySet()) {
-                        if (!dbObject.containsKey(key)) {
-                            dbObject.append(key, JSON.parse(new Document(plugin.getBotConfig().getJsonElement(key).getAsJsonObject()).convertToJsonString()));
-                        }
-                    }
+            this.journal.commit();
+            return this.dataStore.update("bot", new BasicDBObject("_id", this.getSelfUser().getIdLong()), update).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    this.dirty.restore(update);
                 }
-            }
-        }
-    }
-
-    public void saveData() {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("bot");
-        DBObject query = new BasicDBObject("_id", this.getSelfUser().getIdLong());
-        collection.update(query, this.data);
+            });
+        });
     }
 }
@@ -0,0 +1,173 @@
+package de.nickkel.lupobot.core.command;
+
+import com.google.gson.JsonObject;
+import de.nickkel.lupobot.core.LupoBot;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// runs commands with a limit of concurrently running commands per guild and per user, so one guild can't occupy all threads
+// the number of waiting commands is bounded, a burst gets rejected instead of filling the memory
+public class CommandExecutor {
+
+    private final ExecutorService executor;
+    @Getter
+    private final boolean virtualThreads;
+    private final int guildConcurrency, userConcurrency, capacity, userCapacity;
+    private final long deadline;
+    private final Map<Long, Lane> guildLanes = new ConcurrentHashMap<>(), userLanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger(), running = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong(), rejected = new AtomicLong(), shed = new AtomicLong(),
+            executed = new AtomicLong(), totalWait = new AtomicLong(), maxWait = new AtomicLong();
+    private int threadNumber = 0;
+
+    public CommandExecutor(JsonObject config) {
+        this.guildConcurrency = config.has("guildConcurrency") ? config.get("guildConcurrency").getAsInt() : 4;
+        this.userConcurrency = config.has("userConcurrency") ? config.get("userConcurrency").getAsInt() : 2;
+        this.capacity = config.has("queueCapacity") ? config.get("queueCapacity").getAsInt() : 10000;
+        this.userCapacity = config.has("userQueueCapacity") ? config.get("userQueueCapacity").getAsInt() : 5;
+        this.deadline = config.has("deadline") ? config.get("deadline").getAsLong() : 30000;
+
+        ExecutorService executor = null;
+        if (!config.has("virtualThreads") || config.get("virtualThreads").getAsBoolean()) {
+            executor = createVirtualThreadExecutor();
+        }
+        this.virtualThreads = executor != null;
+        if (executor == null) {
+            // core size equals the maximum size, otherwise the pool never grows beyond the core size with an unbounded queue
+            int threads = config.has("threads") ? config.get("threads").getAsInt() : Runtime.getRuntime().availableProcessors()*8;
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r);
+                thread.setDaemon(false);
+                thread.setName("Command Thread #" + this.threadNumber++);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        this.executor = executor;
+        LupoBot.getInstance().getLogger().info("Running commands on " + (this.virtualThreads ? "virtual threads" : "a pool of platform threads"));
+    }
+
+    // virtual threads are only available on Java 21+, the bot still targets Java 8
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // returns false if the queue is full, commands which waited longer than the deadline are shed instead of being run
+    public boolean execute(long guildId, long userId, Runnable command, Runnable shed) {
+        if (this.queued.incrementAndGet() > this.capacity) {
+            this.queued.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+
+        // a single user can only queue a few commands, so spamming doesn't use up the capacity of everyone else
+        long submitted = System.nanoTime();
+        boolean admitted = this.acquire(this.userLanes, userId, this.userConcurrency, this.userCapacity, () ->
+                this.acquire(this.guildLanes, guildId, this.guildConcurrency, Integer.MAX_VALUE, () ->
+                        this.executor.execute(() -> this.run(guildId, userId, command, shed, submitted))));
+        if (!admitted) {
+            this.queued.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+        this.admitted.incrementAndGet();
+        return true;
+    }
+
+    private void run(long guildId, long userId, Runnable command, Runnable shed, long submitted) {
+        long wait = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-submitted);
+        this.queued.decrementAndGet();
+        this.running.incrementAndGet();
+        this.totalWait.addAndGet(wait);
+        this.maxWait.accumulateAndGet(wait, Math::max);
+        try {
+            if (wait > this.deadline) {
+                this.shed.incrementAndGet();
+                shed.run();
+            } else {
+                this.executed.incrementAndGet();
+                command.run();
+            }
+        } catch (Throwable throwable) {
+            LupoBot.getInstance().getLogger().error("An unexpected exception occurred in " + Thread.currentThread().getName() + ":", throwable);
+        } finally {
+            this.running.decrementAndGet();
+            this.release(this.guildLanes, guildId);
+            this.release(this.userLanes, userId);
+        }
+    }
+
+    private boolean acquire(Map<Long, Lane> lanes, long id, int limit, int capacity, Runnable next) {
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(id, key -> new Lane());
+            synchronized (lane) {
+                if (lane.removed) { // released and removed in the meantime
+                    continue;
+                }
+                if (lane.running >= limit) {
+                    if (lane.waiting.size() >= capacity) {
+                        return false;
+                    }
+                    lane.waiting.add(next);
+                    return true;
+                }
+                lane.running++;
+            }
+            next.run();
+            return true;
+        }
+    }
+
+    private void release(Map<Long, Lane> lanes, long id) {
+        Lane lane = lanes.get(id);
+        Runnable next;
+        synchronized (lane) {
+            next = lane.waiting.poll();
+            if (next == null && --lane.running == 0) {
+                lane.removed = true;
+                lanes.remove(id, lane);
+            }
+        }
+        if (next != null) { // the slot is handed over to the next waiting command
+            next.run();
+        }
+    }
+
+    public JsonObject getStatsObject() {
+        long started = this.executed.get()+this.shed.get();
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("virtualThreads", this.virtualThreads);
+        jsonObject.addProperty("running", this.running.get());
+        jsonObject.addProperty("queued", this.queued.get());
+        jsonObject.addProperty("capacity", this.capacity);
+        jsonObject.addProperty("admitted", this.admitted.get());
+        jsonObject.addProperty("rejected", this.rejected.get());
+        jsonObject.addProperty("shed", this.shed.get());
+        jsonObject.addProperty("executed", this.executed.get());
+        jsonObject.addProperty("averageWaitMillis", started == 0 ? 0 : this.totalWait.get()/started);
+        jsonObject.addProperty("maxWaitMillis", this.maxWait.get());
+        jsonObject.addProperty("busyGuilds", this.guildLanes.size());
+        jsonObject.addProperty("busyUsers", this.userLanes.size());
+        if (this.executor instanceof ThreadPoolExecutor) {
+            jsonObject.addProperty("poolSize", ((ThreadPoolExecutor) this.executor).getPoolSize());
+        }
+        return jsonObject;
+    }
+
+    private static class Lane {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int running;
+        private boolean removed;
+    }
+}
@@ -1,200 +1,236 @@
 package de.nickkel.lupobot.core.command;
 
 import com.google.common.reflect.ClassPath;
+import com.google.gson.JsonObject;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoServer;
 import de.nickkel.lupobot.core.data.LupoUser;
 import de.nickkel.lupobot.core.language.LanguageHandler;
+import de.nickkel.lupobot.core.message.MessagePriority;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
 import de.nickkel.lupobot.core.util.LupoColor;
+import de.nickkel.lupobot.core.util.StaffGroup;
+import lombok.Getter;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.exceptions.PermissionException;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 import net.dv8tion.jda.api.interactions.components.Button;
+import net.dv8tion.jda.api.interactions.components.Component;
 import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 public class CommandHandler {
 
-    private int commandThreadNumber = 0;
-    private final ExecutorService commandService = this.createCommandPool(r -> {
-       Thread thread = new Thread(r);
-       thread.setDaemon(false);
-       thread.setUncaughtExceptionHandler((t, e) -> LupoBot.getInstance().getLogger().error("An unexpected exception occurred in " + t.getName() + ":", e));
-       thread.setName("Command Thread #" + commandThreadNumber++);
-       return thread;
-    });
+    @Getter
+    private final CommandExecutor commandExecutor = new CommandExecutor(LupoBot.getInstance().getConfig().has("commands")
+            ? LupoBot.getInstance().getConfig().getJsonElement("commands").getAsJsonObject() : new JsonObject());
+    private final RejectionEmbeds rejectionEmbeds = new RejectionEmbeds(LupoBot.getInstance().getConfig().has("commands")
+            ? LupoBot.getInstance().getConfig().getJsonElement("commands").getAsJsonObject() : new JsonObject());
+    @Getter
+    private final ErrorReporter errorReporter = new ErrorReporter(LupoBot.getInstance().getConfig().has("errors")
+            ? LupoBot.getInstance().getConfig().getJsonElement("errors").getAsJsonObject() : new JsonObject());
+    @Getter
+    private final CooldownService cooldownService = new CooldownService(LupoBot.getInstance().getConfig().has("cooldowns")
+            ? LupoBot.getInstance().getConfig().getJsonElement("cooldowns").getAsJsonObject() : new JsonObject());
 
-    public void runCommand(CommandContext context) {
-        LupoServer server = LupoServer.getByGuild(context.getGuild());
-        LupoUser user = LupoUser.getByMember(context.getMember());
+    private int pipelineThreadNumber = 0;
+    // the checks are cheap and never block, so a small pool is enough to keep them off the gateway threads
+    private final ExecutorService pipeline = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(false);
+        thread.setName("Command Pipeline Thread #" + this.pipelineThreadNumber++);
+        return thread;
+    });
 
-        LupoCommand command = null;
-        for (LupoCommand all : LupoBot.getInstance().getCommands()) {
-            if (context.getLabel().equalsIgnoreCase(all.getInfo().name())) {
-                command = all;
+    // the calling thread only enqueues the command, it is resolved, authorized and checked for cooldowns on the pipeline threads
+    public CompletableFuture<Void> runCommand(CommandContext context) {
+        return CompletableFuture.runAsync(() -> {
+            if (this.resolve(context) && this.authorize(context) && this.checkDisabled(context) && this.checkCooldown(context)) {
+                this.execute(context);
             }
+        }, this.pipeline).exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not run command " + context.getLabel() + " of user " + context.getMember().getId() + ":", throwable);
+            return null;
+        });
+    }
 
-            for (String alias : all.getInfo().aliases()) {
-                if (context.getLabel().equalsIgnoreCase(alias)) {
-                    command = all;
-                }
-            }
-        }
+    // a command the bot chose itself, e.g. the help for a mention, it is not resolved by label, authorized or on cooldown
+    public CompletableFuture<Void> runCommand(CommandContext context, LupoCommand command) {
+        return CompletableFuture.runAsync(() -> {
+            context.setCommand(command);
+            context.setPlugin(command.getPlugin());
+            this.execute(context);
+        }, this.pipeline).exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not run command " + command.getInfo().name() + " of user " + context.getMember().getId() + ":", throwable);
+            return null;
+        });
+    }
+
+    private boolean resolve(CommandContext context) {
+        LupoCommand command = LupoBot.getInstance().getCommand(context.getLabel());
 
         if (command == null) {
-            EmbedBuilder builder = new EmbedBuilder();
-            builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-            builder.setDescription(server.translate(null, "core_command-not-found"));
-            builder.setColor(LupoColor.DARK_GRAY.getColor());
-            builder.setFooter(server.translate(null, "core_tried-command", server.getPrefix() + context.getLabel()));
-            context.getChannel().sendMessage(builder.build()).queue();
-            return;
+            this.reject(context, () -> this.rejectionEmbeds.notFound(context));
+            return false;
         }
         context.setCommand(command);
+        context.setPlugin(command.getPlugin());
+        context.setEphemeral(context.getServer().isSlashInvisible());
+        return true;
+    }
 
-        LupoPlugin plugin = null;
-        for (LupoPlugin all : LupoBot.getInstance().getPlugins()) {
-            if (all.getCommands().contains(command)) {
-                plugin = all;
-            }
-        }
-        context.setPlugin(plugin);
+    private boolean authorize(CommandContext context) {
+        LupoServer server = context.getServer();
+        LupoCommand command = context.getCommand();
+        LupoPlugin plugin = context.getPlugin();
 
-        context.setEphemeral(server.isSlashInvisible());
         for (Permission permission : command.getInfo().permissions()) {
             if (!context.getMember().getPermissions().contains(permission)) {
-                EmbedBuilder builder = new EmbedBuilder();
-                builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-                builder.setDescription(server.translate(null, "core_command-no-user-permission"));
-                builder.addField(server.translate(null, "core_command-permission"), permission.toString(), false);
-                builder.setColor(LupoColor.DARK_GRAY.getColor());
-                builder.setFooter(server.translate(null, "core_used-command", server.getPrefix() + context.getLabel()));
-                command.send(context, builder);
-                return;
+                this.reject(context, () -> this.rejectionEmbeds.noUserPermission(context, permission));
+                return false;
             }
         }
         if (plugin != null && !server.getPlugins().contains(plugin)) {
-            EmbedBuilder builder = new EmbedBuilder();
-            builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-            builder.setDescription(server.translate(null, "core_command-no-plugin", plugin.getInfo().name()));
-            builder.addField(server.translate(null, "core_command-plugin"), server.translatePluginName(plugin), false);
-            builder.setColor(LupoColor.DARK_GRAY.getColor());
-            builder.setFooter(server.translate(null, "core_used-command", server.getPrefix() + context.getLabel()));
-            command.send(context, builder);
-            return;
+            this.reject(context, () -> this.rejectionEmbeds.noPlugin(context, plugin));
+            return false;
         }
 
-        if (user.getCooldowns().containsKey(command)) {
-            long leftCooldown = user.getCooldowns().get(command)+command.getInfo().cooldown()*1000L-System.currentTimeMillis();
-            if (leftCooldown > 0) {
-                String time = String.format("%d " + server.translate(null, "core_minutes") + ", %d " + server.translate(null, "core_seconds"),
-                        TimeUnit.MILLISECONDS.toMinutes(leftCooldown),
-                        TimeUnit.MILLISECONDS.toSeconds(leftCooldown) - TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(leftCooldown))
-                );
-                EmbedBuilder builder = new EmbedBuilder();
-                builder.setColor(LupoColor.DARK_GRAY.getColor());
-                builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-                builder.setDescription(context.getServer().translate(null, "core_command-cooldown", time));
-                builder.setFooter(server.translate(null, "core_used-command", server.getPrefix() + context.getLabel()));
-                command.send(context, builder);
-                return;
-            } else {
-                user.getCooldowns().remove(command);
+        if (command.getInfo().staffPower() != -1) {
+            StaffGroup staffGroup = context.getUser().getStaffGroup();
+            if (staffGroup.getPower() <= command.getInfo().staffPower()) {
+                this.reject(context, () -> this.rejectionEmbeds.staffPower(context, staffGroup.getPower()));
+                return false;
             }
         }
+        return true;
+    }
 
-        if (command.getInfo().staffPower() != -1) {
-            boolean error = user.getStaffGroup().getPower() <= command.getInfo().staffPower();
-            if (error) {
-                EmbedBuilder builder = new EmbedBuilder();
-                builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-                builder.setDescription(server.translate(null, "core_command-no-user-permission"));
-                builder.addField(server.translate(null, "core_command-staff-power-set"), server.formatLong(user.getStaffGroup().getPower()), false);
-                builder.addField(server.translate(null, "core_command-staff-power-needed"), command.getInfo().name(), false);
-                builder.setColor(LupoColor.DARK_GRAY.getColor());
-                builder.setFooter(server.translate(null,  "core_used-command", server.getPrefix() + context.getLabel()));
-                command.send(context, builder);
-                return;
-            }
+    // the cooldown starts when the command is accepted, so the same command can't be run twice at the same time
+    private boolean checkCooldown(CommandContext context) {
+        LupoCommand command = context.getCommand();
+
+        if (command.getInfo().cooldown() == 0) {
+            return true;
+        }
+        long leftCooldown = this.cooldownService.acquire(context.getMember().getIdLong(), command, command.getInfo().cooldown()*1000L);
+        if (leftCooldown > 0) {
+            this.reject(context, () -> this.rejectionEmbeds.cooldown(context, leftCooldown));
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkDisabled(CommandContext context) {
+        if (context.getCommand().isDisabled()) {
+            this.reject(context, () -> this.rejectionEmbeds.disabled(context),
+                    Button.link(LupoBot.getInstance().getConfig().getString("supportServerUrl"), this.rejectionEmbeds.disabledSupport(context)));
+            return false;
         }
+        return true;
+    }
 
-        try {
-            if (command.isDisabled()) {
-                EmbedBuilder builder = new EmbedBuilder();
-                builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-                builder.setDescription(server.translate(null, "core_command-disabled"));
-                builder.setColor(LupoColor.RED.getColor());
-                builder.setFooter(server.translate(null, "core_used-command", server.getPrefix() + context.getLabel()));
-                command.send(context, builder,
-                        Button.link(LupoBot.getInstance().getConfig().getString("supportServerUrl"), context.getServer().translate(context.getPlugin(), "core_command-disabled-link-support"))
-                );
-                return;
-            }
+    // spammed commands only get a reply once per interval, the embed isn't even built for the others
+    private void reject(CommandContext context, Supplier<MessageEmbed> embed, Component... components) {
+        if (!this.rejectionEmbeds.shouldReply(context)) {
+            return;
+        }
+        if (context.getCommand() == null) {
+            LupoBot.getInstance().getMessageScheduler().queue(MessagePriority.COMMAND, context.getChannel().getIdLong(), context.getChannel().sendMessage(embed.get()));
+        } else if (components.length == 0) {
+            context.getCommand().send(context, embed.get());
+        } else {
+            context.getCommand().send(context, new EmbedBuilder(embed.get()), components);
+        }
+    }
+
+    private void execute(CommandContext context) {
+        LupoServer server = context.getServer();
+        LupoCommand command = context.getCommand();
 
-            LupoCommand finalCommand = command;
-            this.commandService.execute(() -> {
+        Runnable busy = () -> {
+            command.resetCooldown(context);
+            if (this.rejectionEmbeds.shouldReply(context)) {
+                command.send(context, this.rejectionEmbeds.busy(context));
+            }
+        };
+        boolean admitted = this.commandExecutor.execute(context.getGuild().getIdLong(), context.getMember().getIdLong(), () -> {
+            try {
                 if (context.getSlash() != null) {
-                    finalCommand.onSlashCommand(context, context.getSlash());
+                    command.onSlashCommand(context, context.getSlash());
                 } else {
-                    finalCommand.onCommand(context);
+                    command.onCommand(context);
                 }
-                if (finalCommand.getInfo().cooldown() != 0) {
-                    user.getCooldowns().put(finalCommand, System.currentTimeMillis());
-                }
-            });
-        } catch (PermissionException permissionException) {
-            EmbedBuilder builder = new EmbedBuilder();
-            builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
-            builder.setDescription(server.translate(null, "core_command-no-bot-permission"));
-            builder.addField(server.translate(null, "core_command-permission"), permissionException.getPermission().toString(), false);
-            builder.setColor(LupoColor.DARK_GRAY.getColor());
-            builder.setFooter(server.translate(null, server.getPrefix() + "core_used-command", server.getPrefix() + context.getLabel()));
-            command.send(context, builder);
-        } catch (Exception e) {
-            e.printStackTrace();
-            String stackTrace = "";
-            for (StackTraceElement element : e.getStackTrace()) {
-                stackTrace = stackTrace + "\n" + element.toString();
+            } catch (PermissionException permissionException) {
+                command.resetCooldown(context);
+                command.send(context, this.rejectionEmbeds.noBotPermission(context, permissionException.getPermission()));
+            } catch (Exception e) {
+                command.resetCooldown(context);
+                ErrorReporter.ReportedError error = this.errorReporter.report(command, e);
+                String message = e.getMessage() + " ";
+                EmbedBuilder builder = new EmbedBuilder();
+                builder.setAuthor(server.translate(null, "core_command-error-report"), LupoBot.getInstance().getConfig().getString("supportServerUrl"),
+                        LupoBot.getInstance().getSelfUser().getAvatarUrl());
+                builder.addField("Message:", message.length() > MessageEmbed.VALUE_MAX_LENGTH ? message.substring(0, MessageEmbed.VALUE_MAX_LENGTH) : message, false);
+                builder.addField("StackTrace:", "```" + error.getStackTrace() + "```", false);
+                builder.addField("ID:", error.getFingerprint(), false);
+                builder.setColor(LupoColor.RED.getColor());
+                builder.setFooter(server.translate(null, "core_used-command", server.getPrefix() + context.getLabel()));
+                command.send(context, builder);
             }
-            EmbedBuilder builder = new EmbedBuilder();
-            builder.setAuthor(server.translate(null, "core_command-error-report"), LupoBot.getInstance().getConfig().getString("supportServerUrl"),
-                    LupoBot.getInstance().getSelfUser().getAvatarUrl());
-            builder.addField("Message:", e.getMessage() + " ", false);
-            builder.addField("StackTrace:", "```" + stackTrace.substring(0, 1000) + "```", false);
-            builder.setColor(LupoColor.RED.getColor());
-            builder.setFooter(server.translate(null, "core_used-command", server.getPrefix() + context.getLabel()));
-            command.send(context, builder);
+        }, busy);
+        if (!admitted) {
+            busy.run();
         }
     }
 
     private boolean existsCommand(LupoCommand command) {
-        return LupoBot.getInstance().getCommands().contains(command);
+        return LupoBot.getInstance().getCommandRegistry().contains(command);
     }
 
     public void registerCommand(LupoPlugin plugin, LupoCommand command) {
-        if (!existsCommand(command)) {
-            LupoBot.getInstance().getCommands().add(command);
-            if (plugin != null) {
-                plugin.getCommands().add(command);
-                command.setPlugin(plugin);
+        this.registerAll(plugin, Collections.singletonList(command));
+    }
+
+    private void registerAll(LupoPlugin plugin, List<LupoCommand> commands) {
+        List<LupoCommand> registered = new ArrayList<>();
+        for (LupoCommand command : commands) {
+            if (!existsCommand(command)) {
+                if (plugin != null) {
+                    plugin.getCommands().add(command);
+                    command.setPlugin(plugin);
+                }
+                registered.add(command);
+                LupoBot.getInstance().getLogger().info("Registered command " + command.getInfo().name());
             }
-            LupoBot.getInstance().getLogger().info("Registered command " + command.getInfo().name());
         }
+        LupoBot.getInstance().getCommandRegistry().register(registered);
     }
 
     public void unregisterCommand(LupoCommand command) {
-        if (existsCommand(command)) {
-            LupoBot.getInstance().getCommands().remove(command);
-            LupoBot.getInstance().getLogger().info("Unregistered command " + command.getInfo().name());
+        this.unregisterCommands(Collections.singletonList(command));
+    }
+
+    public void unregisterCommands(List<LupoCommand> commands) {
+        List<LupoCommand> unregistered = new ArrayList<>();
+        for (LupoCommand command : commands) {
+            if (existsCommand(command)) {
+                unregistered.add(command);
+                LupoBot.getInstance().getLogger().info("Unregistered command " + command.getInfo().name());
+            }
         }
+        LupoBot.getInstance().getCommandRegistry().unregister(unregistered);
     }
 
     public void registerSlashCommands() {
@@ -248,6 +284,7 @@ public class CommandHandler {
         }
 
         try {
+            List<LupoCommand> commands = new ArrayList<>();
             for (final ClassPath.ClassInfo info : ClassPath.from(loader).getTopLevelClasses()) {
                 if (info.getName().startsWith(packageName)) {
                     final Class<?> clazz = info.load();
@@ -255,11 +292,11 @@ public class CommandHandler {
                     if (!clazz.isAnnotationPresent(CommandInfo.class) && object instanceof LupoCommand) {
                         throw new IllegalArgumentException("Command " + clazz.getClass().getSimpleName() + " is missing the @CommandInfo annotation");
                     } else {
-                        LupoCommand command = (LupoCommand) object;
-                        registerCommand(null, command);
+                        commands.add((LupoCommand) object);
                     }
                 }
             }
+            registerAll(null, commands);
         } catch (IOException | InstantiationException | IllegalAccessException e) {
             e.printStackTrace();
         }
@@ -274,6 +311,7 @@ public class CommandHandler {
         }
 
         try {
+            List<LupoCommand> commands = new ArrayList<>();
             for (final ClassPath.ClassInfo info : ClassPath.from(plugin.getClass().getClassLoader()).getTopLevelClasses()) {
                 if (info.getName().startsWith(packageName)) {
                     final Class<?> clazz = info.load();
@@ -281,17 +319,13 @@ public class CommandHandler {
                     if (!clazz.isAnnotationPresent(CommandInfo.class) && object instanceof LupoCommand) {
                         throw new IllegalArgumentException("Command " + clazz.getClass().getSimpleName() + " is missing the @CommandInfo annotation");
                     } else {
-                        LupoCommand command = (LupoCommand) object;
-                        registerCommand(plugin, command);
+                        commands.add((LupoCommand) object);
                     }
                 }
             }
+            registerAll(plugin, commands);
         } catch (IOException | InstantiationException | IllegalAccessException e) {
             e.printStackTrace();
         }
     }
-
-    public ExecutorService createCommandPool(ThreadFactory factory) {
-        return new ThreadPoolExecutor(4, Runtime.getRuntime().availableProcessors() * 4, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
-    }
 }
@@ -2,44 +2,58 @@ package de.nickkel.lupobot.core.command;
 
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoServer;
+import de.nickkel.lupobot.core.data.LupoUser;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 
-import java.util.Arrays;
-
 public class CommandListener extends ListenerAdapter {
 
     @Override
     public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
-        String prefix = server.getPrefix();
+        if (event.getMember() == null) { // webhook messages
+            return;
+        }
+
+        // a cold server must not stall the gateway thread, continue as soon as it is loaded
+        LupoServer.loadByGuild(event.getGuild()).thenAccept(server -> this.handleMessage(event, server)).exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not handle message of server " + event.getGuild().getId() + ":", throwable);
+            return null;
+        });
+    }
 
-        if (event.getMessage().getContentRaw().replace("!", "").startsWith(LupoBot.getInstance().getSelfUser().getAsMention())) {
+    private void handleMessage(GuildMessageReceivedEvent event, LupoServer server) {
+        String content = event.getMessage().getContentRaw();
+
+        if (CommandParser.startsWithMention(content, LupoBot.getInstance().getSelfUser().getId())) {
             LupoCommand command = LupoBot.getInstance().getCommand("help");
             if (command != null) {
-                CommandContext context = new CommandContext(event.getGuild(), event.getMember(), event.getChannel(), event.getMessage(), "prefix", new String[]{}, null, server.isSlashInvisible());
-                context.setPlugin(LupoBot.getInstance().getPlugin("help"));
-                command.onCommand(context);
+                this.whenUserLoaded(event, () -> {
+                    CommandContext context = new CommandContext(event.getGuild(), event.getMember(), event.getChannel(), event.getMessage(), "prefix", new String[]{}, null, server.isSlashInvisible());
+                    LupoBot.getInstance().getCommandHandler().runCommand(context, command);
+                });
             }
         }
 
-        if (!event.getMessage().getContentRaw().startsWith(prefix) || event.getMessage().getContentRaw().equals(prefix)) {
+        CommandParser parser = CommandParser.parse(content, server.getPrefix());
+        if (parser == null) {
             return;
         }
 
-        String label = event.getMessage().getContentStripped().replace(prefix, "").split(" ")[0];
-        String message = event.getMessage().getContentRaw().replace(prefix, "").replace(label, "");
-        if (message.startsWith(" ")) {
-            message = message.substring(1);
-        }
+        // the command context works with strings, they are copied once here
+        String label = parser.getLabel().toString();
+        String[] args = parser.getArgs();
+        this.whenUserLoaded(event, () -> {
+            CommandContext context = new CommandContext(event.getGuild(), event.getMember(), event.getChannel(), event.getMessage(), label, args, null, server.isSlashInvisible());
+            LupoBot.getInstance().getCommandHandler().runCommand(context);
+        });
+    }
 
-        String[] args = message.split(" ");
-        if (Arrays.toString(args).equals("[]")) {
-            args = new String[0];
-        }
-        CommandContext context = new CommandContext(event.getGuild(), event.getMember(), event.getChannel(), event.getMessage(), label, args, null, server.isSlashInvisible());
-        LupoBot.getInstance().getCommandHandler().runCommand(context);
+    private void whenUserLoaded(GuildMessageReceivedEvent event, Runnable runnable) {
+        LupoUser.loadByMember(event.getMember()).thenRun(runnable).exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not handle command of user " + event.getAuthor().getId() + ":", throwable);
+            return null;
+        });
     }
 
     @Override
@@ -48,7 +62,12 @@ public class CommandListener extends ListenerAdapter {
             event.reply("Commands can only be used on guilds which have invited LupoBot!").queue();
             return;
         }
-        LupoBot.getInstance().getCommandHandler().runCommand(new CommandContext(event.getGuild(), event.getMember(), event.getTextChannel(),
-                null, event.getName(), new String[]{}, event, LupoServer.getByGuild(event.getGuild()).isSlashInvisible()));
+        LupoServer.loadByGuild(event.getGuild()).thenCombine(LupoUser.loadByMember(event.getMember()), (server, user) -> server).thenAccept(server -> {
+            LupoBot.getInstance().getCommandHandler().runCommand(new CommandContext(event.getGuild(), event.getMember(), event.getTextChannel(),
+                    null, event.getName(), new String[]{}, event, server.isSlashInvisible()));
+        }).exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not handle slash command of server " + event.getGuild().getId() + ":", throwable);
+            return null;
+        });
     }
 }
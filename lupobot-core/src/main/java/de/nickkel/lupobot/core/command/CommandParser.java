@@ -0,0 +1,148 @@
+package de.nickkel.lupobot.core.command;
+
+import java.util.Arrays;
+
+// parses prefix commands by offsets into the raw message, label and args are views into it until a command needs strings
+public class CommandParser {
+
+    private static final String[] NO_ARGS = new String[0];
+    private static final int[] NO_BOUNDS = new int[0];
+
+    private final String content;
+    private final int labelStart, labelEnd;
+    // start and end of every arg, found on the first access
+    private int[] argBounds;
+    private int argCount;
+
+    private CommandParser(String content, int labelStart, int labelEnd) {
+        this.content = content;
+        this.labelStart = labelStart;
+        this.labelEnd = labelEnd;
+    }
+
+    // returns null without allocating anything if the message is no command
+    public static CommandParser parse(String content, String prefix) {
+        int length = content.length();
+        int prefixLength = prefix.length();
+        if (length <= prefixLength || !content.regionMatches(0, prefix, 0, prefixLength)) {
+            return null;
+        }
+
+        int end = prefixLength;
+        while (end < length && !Character.isWhitespace(content.charAt(end))) {
+            end++;
+        }
+        if (end == prefixLength) { // whitespace right after the prefix
+            return null;
+        }
+        return new CommandParser(content, prefixLength, end);
+    }
+
+    // matches <@id> and <@!id> at the start of the message
+    public static boolean startsWithMention(String content, String userId) {
+        if (!content.startsWith("<@")) {
+            return false;
+        }
+        int offset = content.startsWith("!", 2) ? 3 : 2;
+        return content.regionMatches(offset, userId, 0, userId.length()) && content.startsWith(">", offset+userId.length());
+    }
+
+    // views into the raw message, the chars are only copied if a view is turned into a string
+    public CharSequence getLabel() {
+        return new View(this.content, this.labelStart, this.labelEnd);
+    }
+
+    public int getArgCount() {
+        this.split();
+        return this.argCount;
+    }
+
+    public CharSequence getArg(int index) {
+        this.split();
+        if (index < 0 || index >= this.argCount) {
+            throw new IndexOutOfBoundsException("Arg " + index + " of " + this.argCount);
+        }
+        return new View(this.content, this.argBounds[index*2], this.argBounds[index*2+1]);
+    }
+
+    // copies of the args for the command context
+    public String[] getArgs() {
+        this.split();
+        if (this.argCount == 0) {
+            return NO_ARGS;
+        }
+        String[] args = new String[this.argCount];
+        for (int i = 0; i < this.argCount; i++) {
+            args[i] = this.content.substring(this.argBounds[i*2], this.argBounds[i*2+1]);
+        }
+        return args;
+    }
+
+    // args are separated by single spaces like String#split(" ") did before, so repeated spaces create empty args
+    // and getArgsAsString gives back the original text, empty args at the end are dropped
+    private void split() {
+        if (this.argBounds != null) {
+            return;
+        }
+        int[] bounds = NO_BOUNDS;
+        int count = 0, kept = 0;
+        int length = this.content.length();
+        int start = this.labelEnd+1; // the whitespace which ended the label
+        while (start <= length) {
+            int end = this.content.indexOf(' ', start);
+            if (end == -1) {
+                end = length;
+            }
+            if (count*2 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, Math.max(8, bounds.length*2));
+            }
+            bounds[count*2] = start;
+            bounds[count*2+1] = end;
+            count++;
+            if (end > start) {
+                kept = count;
+            }
+            start = end+1;
+        }
+        this.argCount = kept;
+        this.argBounds = bounds;
+    }
+
+    private static class View implements CharSequence {
+
+        private final String content;
+        private final int start, end;
+
+        private View(String content, int start, int end) {
+            this.content = content;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return this.end-this.start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= this.length()) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return this.content.charAt(this.start+index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > this.length() || start > end) {
+                throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + this.length());
+            }
+            return new View(this.content, this.start+start, this.start+end);
+        }
+
+        @Override
+        public String toString() {
+            return this.content.substring(this.start, this.end);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package de.nickkel.lupobot.core.command;
+
+import de.nickkel.lupobot.core.LupoBot;
+
+import java.util.*;
+
+// commands are read on every message, changes build a new index which is swapped in at once
+public class CommandRegistry {
+
+    private volatile List<LupoCommand> commands = Collections.emptyList();
+    private volatile Map<String, LupoCommand> index = Collections.emptyMap();
+
+    public LupoCommand get(String label) {
+        return this.index.get(label.toLowerCase(Locale.ROOT));
+    }
+
+    public List<LupoCommand> getCommands() {
+        return this.commands;
+    }
+
+    public boolean contains(LupoCommand command) {
+        return this.commands.contains(command);
+    }
+
+    public synchronized void register(Collection<LupoCommand> commands) {
+        List<LupoCommand> updated = new ArrayList<>(this.commands);
+        for (LupoCommand command : commands) {
+            if (!updated.contains(command)) {
+                updated.add(command);
+            }
+        }
+        this.swap(updated);
+    }
+
+    public synchronized void unregister(Collection<LupoCommand> commands) {
+        List<LupoCommand> updated = new ArrayList<>(this.commands);
+        updated.removeAll(commands);
+        this.swap(updated);
+    }
+
+    private void swap(List<LupoCommand> commands) {
+        // names are indexed first, so an alias can never hide the name of another command
+        Map<String, LupoCommand> index = new HashMap<>();
+        for (LupoCommand command : commands) {
+            LupoCommand existing = index.putIfAbsent(command.getInfo().name().toLowerCase(Locale.ROOT), command);
+            if (existing != null) {
+                LupoBot.getInstance().getLogger().warn("Command name " + command.getInfo().name() + " is already used by " + existing.getClass().getName());
+            }
+        }
+        for (LupoCommand command : commands) {
+            for (String alias : command.getInfo().aliases()) {
+                index.putIfAbsent(alias.toLowerCase(Locale.ROOT), command);
+            }
+        }
+
+        this.index = Collections.unmodifiableMap(index);
+        this.commands = Collections.unmodifiableList(commands);
+    }
+}
@@ -0,0 +1,358 @@
+package de.nickkel.lupobot.core.command;
+
+import com.google.gson.JsonObject;
+import de.nickkel.lupobot.core.LupoBot;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// cooldowns of all users, stored in primitive arrays keyed by user and command
+// a hierarchical timing wheel removes them once they are expired, so nothing is kept for users who never come back
+public class CooldownService {
+
+    private static final int SEGMENTS = 64, BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS-1, LEVELS = 3;
+
+    private final long tickMillis;
+    private final boolean persist;
+    private final Path file;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<String, Integer> commandIndex = new ConcurrentHashMap<>();
+    private final List<String> commandNames = new CopyOnWriteArrayList<>();
+    private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+    private long tick;
+
+    public CooldownService(JsonObject config) {
+        this.tickMillis = config.has("tickMillis") ? config.get("tickMillis").getAsLong() : 1000;
+        this.persist = config.has("persist") && config.get("persist").getAsBoolean();
+        this.file = Paths.get(config.has("file") ? config.get("file").getAsString() : "cooldowns.dat");
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment();
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                this.wheel[level][slot] = new Slot();
+            }
+        }
+        this.tick = System.currentTimeMillis()/this.tickMillis;
+
+        Timer timer = new Timer("Cooldowns", true);
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                CooldownService.this.advance(System.currentTimeMillis()/CooldownService.this.tickMillis);
+            }
+        }, this.tickMillis, this.tickMillis);
+    }
+
+    // starts the cooldown and returns 0, or returns the milliseconds left if the cooldown is still running
+    public long acquire(long userId, LupoCommand command, long cooldownMillis) {
+        int index = this.getIndex(command.getInfo().name());
+        long now = System.currentTimeMillis();
+        long left = this.getSegment(userId, index).acquire(userId, index, now, now+cooldownMillis);
+        if (left == 0) {
+            this.schedule(userId, index, now+cooldownMillis);
+        }
+        return left;
+    }
+
+    public long getRemaining(long userId, LupoCommand command) {
+        int index = this.getIndex(command.getInfo().name());
+        long expiry = this.getSegment(userId, index).get(userId, index);
+        return Math.max(0, expiry-System.currentTimeMillis());
+    }
+
+    public void reset(long userId, LupoCommand command) {
+        int index = this.getIndex(command.getInfo().name());
+        this.getSegment(userId, index).remove(userId, index, Long.MAX_VALUE);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public JsonObject getStatsObject() {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("active", this.size());
+        jsonObject.addProperty("commands", this.commandNames.size());
+        jsonObject.addProperty("persist", this.persist);
+        return jsonObject;
+    }
+
+    // command names instead of classes, so the index stays the same if a plugin gets reloaded
+    // new names are added under one lock, the index has to be the position of the name in commandNames
+    private int getIndex(String name) {
+        Integer index = this.commandIndex.get(name);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this.commandNames) {
+            index = this.commandIndex.get(name);
+            if (index == null) {
+                index = this.commandNames.size();
+                this.commandNames.add(name);
+                this.commandIndex.put(name, index);
+            }
+            return index;
+        }
+    }
+
+    private Segment getSegment(long userId, int index) {
+        return this.segments[(hash(userId, index) >>> 16) & (SEGMENTS-1)];
+    }
+
+    private static int hash(long userId, int index) {
+        long hash = (userId ^ ((long) index << 48)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void schedule(long userId, int index, long expiry) {
+        synchronized (this.wheel) {
+            // the slot of the current tick was already expired
+            this.place(userId, index, (expiry+this.tickMillis-1)/this.tickMillis, this.tick+1);
+        }
+    }
+
+    private void place(long userId, int index, long expiryTick, long minTick) {
+        expiryTick = Math.max(expiryTick, minTick);
+        long delta = expiryTick-this.tick;
+        int level = 0;
+        while (level < LEVELS-1 && delta >= 1L << (BITS*(level+1))) {
+            level++;
+        }
+        if (delta >= 1L << (BITS*LEVELS)) { // longer than the wheel, placed in its last slot and moved down again from there
+            expiryTick = this.tick+(1L << (BITS*LEVELS))-1;
+        }
+        this.wheel[level][(int) (expiryTick >>> (BITS*level)) & MASK].add(userId, index);
+    }
+
+    private void advance(long target) {
+        synchronized (this.wheel) {
+            while (this.tick < target) {
+                this.tick++;
+                // a full turn of a level moves the next slot of the level above down, where the entries get placed more precisely
+                for (int level = 1; level < LEVELS && (this.tick & ((1L << (BITS*level))-1)) == 0; level++) {
+                    this.cascade(level, (int) (this.tick >>> (BITS*level)) & MASK);
+                }
+                this.expire(this.wheel[0][(int) this.tick & MASK]);
+            }
+        }
+    }
+
+    private void cascade(int level, int index) {
+        Slot slot = this.wheel[level][index];
+        int size = slot.size;
+        long[] users = slot.users;
+        int[] commands = slot.commands;
+        slot.reset(); // entries of a renewed cooldown can be placed in the same slot again
+        for (int i = 0; i < size; i++) {
+            long expiry = this.getSegment(users[i], commands[i]).get(users[i], commands[i]);
+            if (expiry != 0) {
+                this.place(users[i], commands[i], (expiry+this.tickMillis-1)/this.tickMillis, this.tick);
+            }
+        }
+    }
+
+    private void expire(Slot slot) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < slot.size; i++) {
+            // a cooldown which was started again in the meantime has a later expiry and another entry in the wheel
+            this.getSegment(slot.users[i], slot.commands[i]).remove(slot.users[i], slot.commands[i], now);
+        }
+        slot.size = 0;
+    }
+
+    public void load() {
+        if (!this.persist || !Files.exists(this.file)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+            int commands = in.readInt();
+            int[] indices = new int[commands];
+            for (int i = 0; i < commands; i++) {
+                indices[i] = this.getIndex(in.readUTF());
+            }
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                long userId = in.readLong();
+                int index = indices[in.readInt()];
+                long expiry = in.readLong();
+                if (expiry > now) {
+                    this.getSegment(userId, index).acquire(userId, index, now, expiry);
+                    this.schedule(userId, index, expiry);
+                    loaded++;
+                }
+            }
+        } catch (IOException e) {
+            LupoBot.getInstance().getLogger().warn("Could not load cooldowns: " + e.getMessage());
+            return;
+        }
+        LupoBot.getInstance().getLogger().info("Loaded " + loaded + " cooldowns");
+    }
+
+    public void save() {
+        if (!this.persist) {
+            return;
+        }
+
+        // written to a temporary file first, a crash while saving must not destroy the last state
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            List<String> names = this.commandNames;
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            int entries = 0;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream entryOut = new DataOutputStream(bytes);
+            long now = System.currentTimeMillis();
+            for (Segment segment : this.segments) {
+                entries += segment.write(entryOut, now, names.size());
+            }
+            out.writeInt(entries);
+            bytes.writeTo(out);
+        } catch (IOException e) {
+            LupoBot.getInstance().getLogger().warn("Could not save cooldowns: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LupoBot.getInstance().getLogger().warn("Could not save cooldowns: " + e.getMessage());
+        }
+    }
+
+    // open addressing with linear probing, an expiry of 0 marks a free slot
+    private static class Segment {
+
+        private long[] users = new long[16];
+        private int[] commands = new int[16];
+        private long[] expiries = new long[16];
+        private int size;
+
+        private synchronized long acquire(long userId, int index, long now, long expiry) {
+            int slot = this.find(userId, index);
+            if (this.expiries[slot] > now) {
+                return this.expiries[slot]-now;
+            }
+            if (this.expiries[slot] == 0) {
+                if (++this.size > this.expiries.length/2) {
+                    this.resize(this.expiries.length*2);
+                    slot = this.find(userId, index);
+                }
+                this.users[slot] = userId;
+                this.commands[slot] = index;
+            }
+            this.expiries[slot] = expiry;
+            return 0;
+        }
+
+        private synchronized long get(long userId, int index) {
+            return this.expiries[this.find(userId, index)];
+        }
+
+        // only removes the cooldown if it expired before the given time
+        private synchronized void remove(long userId, int index, long now) {
+            int slot = this.find(userId, index);
+            if (this.expiries[slot] == 0 || this.expiries[slot] > now) {
+                return;
+            }
+            this.size--;
+            // moves following entries back into the gap, so probing never stops at it
+            int mask = this.expiries.length-1;
+            int gap = slot;
+            for (int next = (gap+1) & mask; this.expiries[next] != 0; next = (next+1) & mask) {
+                int home = hash(this.users[next], this.commands[next]) & mask;
+                if (((next-home) & mask) >= ((next-gap) & mask)) {
+                    this.users[gap] = this.users[next];
+                    this.commands[gap] = this.commands[next];
+                    this.expiries[gap] = this.expiries[next];
+                    gap = next;
+                }
+            }
+            this.expiries[gap] = 0;
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized int write(DataOutputStream out, long now, int commands) throws IOException {
+            int written = 0;
+            for (int i = 0; i < this.expiries.length; i++) {
+                if (this.expiries[i] > now && this.commands[i] < commands) {
+                    out.writeLong(this.users[i]);
+                    out.writeInt(this.commands[i]);
+                    out.writeLong(this.expiries[i]);
+                    written++;
+                }
+            }
+            return written;
+        }
+
+        private int find(long userId, int index) {
+            int mask = this.expiries.length-1;
+            int slot = hash(userId, index) & mask;
+            while (this.expiries[slot] != 0 && (this.users[slot] != userId || this.commands[slot] != index)) {
+                slot = (slot+1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize(int capacity) {
+            long[] users = this.users, expiries = this.expiries;
+            int[] commands = this.commands;
+            this.users = new long[capacity];
+            this.commands = new int[capacity];
+            this.expiries = new long[capacity];
+            for (int i = 0; i < expiries.length; i++) {
+                if (expiries[i] != 0) {
+                    int slot = this.find(users[i], commands[i]);
+                    this.users[slot] = users[i];
+                    this.commands[slot] = commands[i];
+                    this.expiries[slot] = expiries[i];
+                }
+            }
+        }
+    }
+
+    private static class Slot {
+
+        private long[] users = new long[8];
+        private int[] commands = new int[8];
+        private int size;
+
+        private void add(long userId, int index) {
+            if (this.size == this.users.length) {
+                this.users = Arrays.copyOf(this.users, this.size*2);
+                this.commands = Arrays.copyOf(this.commands, this.size*2);
+            }
+            this.users[this.size] = userId;
+            this.commands[this.size] = index;
+            this.size++;
+        }
+
+        private void reset() {
+            this.size = 0;
+            this.users = new long[8];
+            this.commands = new int[8];
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package de.nickkel.lupobot.core.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import de.nickkel.lupobot.core.LupoBot;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// collects exceptions of commands by fingerprint, the same error is only logged once per interval but always counted
+public class ErrorReporter {
+
+    private static final int FINGERPRINT_FRAMES = 8, MAX_CAUSES = 10;
+
+    private final long reportInterval;
+    private final int maxFingerprints, stackTraceLength;
+    private final Map<String, ReportedError> errors = new ConcurrentHashMap<>();
+    private final AtomicLong untracked = new AtomicLong();
+
+    public ErrorReporter(JsonObject config) {
+        this.reportInterval = config.has("reportInterval") ? config.get("reportInterval").getAsLong() : 60000;
+        this.maxFingerprints = config.has("maxFingerprints") ? config.get("maxFingerprints").getAsInt() : 1000;
+        // an embed field can hold 1024 characters, including the code block around it
+        this.stackTraceLength = config.has("stackTraceLength") ? Math.min(1000, config.get("stackTraceLength").getAsInt()) : 1000;
+    }
+
+    public ReportedError report(LupoCommand command, Throwable throwable) {
+        String fingerprint = fingerprint(throwable);
+        ReportedError error = this.errors.get(fingerprint);
+        if (error == null) {
+            if (this.errors.size() >= this.maxFingerprints) { // a flood of different errors must not fill the memory
+                this.untracked.incrementAndGet();
+                error = new ReportedError(fingerprint, command, throwable, this.render(throwable));
+            } else {
+                ReportedError created = new ReportedError(fingerprint, command, throwable, this.render(throwable));
+                error = this.errors.putIfAbsent(fingerprint, created);
+                if (error == null) {
+                    error = created;
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        error.count.incrementAndGet();
+        error.lastSeen = now;
+        long lastReported = error.lastReported.get();
+        if (now-lastReported >= this.reportInterval && error.lastReported.compareAndSet(lastReported, now)) {
+            long suppressed = error.suppressed.getAndSet(0);
+            LupoBot.getInstance().getLogger().error("Command " + command.getInfo().name() + " failed with error " + fingerprint
+                    + (suppressed != 0 ? " (" + suppressed + " more times since the last report)" : "") + ":", throwable);
+        } else {
+            error.suppressed.incrementAndGet();
+        }
+        return error;
+    }
+
+    public Collection<ReportedError> getErrors() {
+        return this.errors.values();
+    }
+
+    public ReportedError getError(String fingerprint) {
+        return this.errors.get(fingerprint);
+    }
+
+    public void clear() {
+        this.errors.clear();
+        this.untracked.set(0);
+    }
+
+    public JsonObject getStatsObject() {
+        List<ReportedError> errors = new ArrayList<>(this.errors.values());
+        errors.sort((first, second) -> Long.compare(second.getCount(), first.getCount()));
+        JsonArray jsonArray = new JsonArray();
+        for (ReportedError error : errors) {
+            jsonArray.add(error.getStatsObject(false));
+        }
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("fingerprints", errors.size());
+        jsonObject.addProperty("untracked", this.untracked.get());
+        jsonObject.add("errors", jsonArray);
+        return jsonObject;
+    }
+
+    // the type and the top frames of every cause, messages are left out because they often contain ids
+    private static String fingerprint(Throwable throwable) {
+        long hash = 0xcbf29ce484222325L;
+        int depth = 0;
+        for (Throwable cause = throwable; cause != null && depth++ < MAX_CAUSES; cause = cause.getCause()) {
+            hash = hash(hash, cause.getClass().getName());
+            StackTraceElement[] elements = cause.getStackTrace();
+            for (int i = 0; i < Math.min(FINGERPRINT_FRAMES, elements.length); i++) {
+                hash = hash(hash, elements[i].getClassName());
+                hash = hash(hash, elements[i].getMethodName());
+                hash = (hash ^ elements[i].getLineNumber()) * 0x100000001b3L;
+            }
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // stops as soon as the limit is reached instead of building the whole trace first
+    private String render(Throwable throwable) {
+        StringBuilder builder = new StringBuilder(this.stackTraceLength);
+        int depth = 0;
+        for (Throwable cause = throwable; cause != null && depth++ < MAX_CAUSES && builder.length() < this.stackTraceLength; cause = cause.getCause()) {
+            if (cause != throwable) {
+                this.append(builder, "Caused by: ");
+            }
+            this.append(builder, cause.getClass().getName());
+            for (StackTraceElement element : cause.getStackTrace()) {
+                if (builder.length() >= this.stackTraceLength) {
+                    break;
+                }
+                this.append(builder, "\n  at ");
+                this.append(builder, element.toString());
+            }
+            this.append(builder, "\n");
+        }
+        return builder.toString().trim();
+    }
+
+    private void append(StringBuilder builder, String value) {
+        int left = this.stackTraceLength-builder.length();
+        if (left <= 0) {
+            return;
+        }
+        if (value.length() > left) {
+            builder.append(value, 0, Math.max(0, left-3)).append("...");
+        } else {
+            builder.append(value);
+        }
+    }
+
+    public static class ReportedError {
+
+        @Getter
+        private final String fingerprint, type, message, command, stackTrace;
+        @Getter
+        private final long firstSeen = System.currentTimeMillis();
+        private volatile long lastSeen;
+        private final AtomicLong count = new AtomicLong(), lastReported = new AtomicLong(), suppressed = new AtomicLong();
+
+        private ReportedError(String fingerprint, LupoCommand command, Throwable throwable, String stackTrace) {
+            this.fingerprint = fingerprint;
+            this.type = throwable.getClass().getName();
+            this.message = throwable.getMessage();
+            this.command = command.getInfo().name();
+            this.stackTrace = stackTrace;
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public long getLastSeen() {
+            return this.lastSeen;
+        }
+
+        public JsonObject getStatsObject(boolean stackTrace) {
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.addProperty("fingerprint", this.fingerprint);
+            jsonObject.addProperty("type", this.type);
+            jsonObject.addProperty("message", this.message);
+            jsonObject.addProperty("command", this.command);
+            jsonObject.addProperty("count", this.count.get());
+            jsonObject.addProperty("firstSeen", this.firstSeen);
+            jsonObject.addProperty("lastSeen", this.lastSeen);
+            if (stackTrace) {
+                jsonObject.addProperty("stackTrace", this.stackTrace);
+            }
+            return jsonObject;
+        }
+    }
+}
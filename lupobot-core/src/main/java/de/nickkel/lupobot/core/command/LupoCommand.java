@@ -2,6 +2,7 @@ package de.nickkel.lupobot.core.command;
 
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoServer;
+import de.nickkel.lupobot.core.message.MessagePriority;
 import de.nickkel.lupobot.core.pagination.Page;
 import de.nickkel.lupobot.core.pagination.Paginator;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
@@ -15,6 +16,7 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import net.dv8tion.jda.api.interactions.components.Button;
 import net.dv8tion.jda.api.interactions.components.Component;
+import net.dv8tion.jda.api.requests.RestAction;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -38,41 +40,51 @@ public abstract class LupoCommand {
 
     public void send(CommandContext context, EmbedBuilder builder, Component... components) {
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(builder.build()).setActionRow(components).queue();
+            this.queue(context, context.getChannel().sendMessage(builder.build()).setActionRow(components));
         } else {
-            context.getSlash().replyEmbeds(builder.build()).addActionRow(components).setEphemeral(context.isEphemeral()).queue();
+            this.queue(context, context.getSlash().replyEmbeds(builder.build()).addActionRow(components).setEphemeral(context.isEphemeral()));
         }
     }
 
     public void send(CommandContext context, EmbedBuilder builder) {
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(builder.build()).queue();
+            this.queue(context, context.getChannel().sendMessage(builder.build()));
         } else {
-            context.getSlash().replyEmbeds(builder.build()).setEphemeral(context.isEphemeral()).queue();
+            this.queue(context, context.getSlash().replyEmbeds(builder.build()).setEphemeral(context.isEphemeral()));
         }
     }
 
     public void send(CommandContext context, String message) {
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(message).queue();
+            this.queue(context, context.getChannel().sendMessage(message));
         } else {
-            context.getSlash().reply(message).setEphemeral(context.isEphemeral()).queue();
+            this.queue(context, context.getSlash().reply(message).setEphemeral(context.isEphemeral()));
         }
     }
 
     public void send(CommandContext context, Message message) {
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(message).queue();
+            this.queue(context, context.getChannel().sendMessage(message));
         } else {
-            context.getSlash().reply(message).setEphemeral(context.isEphemeral()).queue();
+            this.queue(context, context.getSlash().reply(message).setEphemeral(context.isEphemeral()));
         }
     }
 
     public void send(CommandContext context, MessageEmbed embed) {
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(embed).queue();
+            this.queue(context, context.getChannel().sendMessage(embed));
         } else {
-            context.getSlash().replyEmbeds(embed).setEphemeral(context.isEphemeral()).queue();
+            this.queue(context, context.getSlash().replyEmbeds(embed).setEphemeral(context.isEphemeral()));
+        }
+    }
+
+    // replies to slash commands are sent right away, discord has to get them within 3 seconds and they don't count to the rate limits
+    // the answer of a prefix command is dropped if the queue is full
+    private void queue(CommandContext context, RestAction<?> action) {
+        if (context.getSlash() != null) {
+            action.queue();
+        } else {
+            LupoBot.getInstance().getMessageScheduler().queue(MessagePriority.COMMAND, context.getChannel().getIdLong(), action);
         }
     }
 
@@ -84,6 +96,11 @@ public abstract class LupoCommand {
         this.disabled = true;
     }
 
+    // e.g. if the command couldn't be used, so the user can try it again right away
+    public void resetCooldown(CommandContext context) {
+        LupoBot.getInstance().getCommandHandler().getCooldownService().reset(context.getMember().getIdLong(), this);
+    }
+
     public void sendHelp(CommandContext context) {
         send(context, getHelpBuilder(context).build());
     }
@@ -0,0 +1,172 @@
+package de.nickkel.lupobot.core.command;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.JsonObject;
+import de.nickkel.lupobot.core.data.LupoServer;
+import de.nickkel.lupobot.core.plugin.LupoPlugin;
+import de.nickkel.lupobot.core.util.LupoColor;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// embeds for commands which are not run, the translations are cached per language and prefix and only the dynamic parts are filled in
+public class RejectionEmbeds {
+
+    private static final String PARAM = "\u0000";
+
+    private final Cache<String, Template> templates;
+    private final Cache<Long, Boolean> replied;
+
+    public RejectionEmbeds(JsonObject config) {
+        long size = config.has("rejectionTemplates") ? config.get("rejectionTemplates").getAsLong() : 1000;
+        long interval = config.has("rejectionInterval") ? config.get("rejectionInterval").getAsLong() : 3000;
+        this.templates = CacheBuilder.newBuilder().maximumSize(size).build();
+        this.replied = CacheBuilder.newBuilder().expireAfterWrite(interval, TimeUnit.MILLISECONDS).build();
+    }
+
+    // a user gets one rejection per interval, slash commands always need a reply
+    public boolean shouldReply(CommandContext context) {
+        return context.getSlash() != null || this.replied.asMap().putIfAbsent(context.getMember().getIdLong(), Boolean.TRUE) == null;
+    }
+
+    public MessageEmbed notFound(CommandContext context) {
+        Template template = this.getTemplate(context.getServer());
+        EmbedBuilder builder = this.create(context, LupoColor.DARK_GRAY);
+        builder.setDescription(template.notFound);
+        builder.setFooter(template.triedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public MessageEmbed noUserPermission(CommandContext context, Permission permission) {
+        Template template = this.getTemplate(context.getServer());
+        EmbedBuilder builder = this.create(context, LupoColor.DARK_GRAY);
+        builder.setDescription(template.noUserPermission);
+        builder.addField(template.permission, permission.toString(), false);
+        builder.setFooter(template.usedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public MessageEmbed noBotPermission(CommandContext context, Permission permission) {
+        Template template = this.getTemplate(context.getServer());
+        EmbedBuilder builder = this.create(context, LupoColor.DARK_GRAY);
+        builder.setDescription(template.noBotPermission);
+        builder.addField(template.permission, permission.toString(), false);
+        builder.setFooter(template.usedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public MessageEmbed noPlugin(CommandContext context, LupoPlugin plugin) {
+        Template template = this.getTemplate(context.getServer());
+        EmbedBuilder builder = this.create(context, LupoColor.DARK_GRAY);
+        builder.setDescription(template.noPlugin.fill(plugin.getInfo().name()));
+        builder.addField(template.plugin, template.pluginNames.computeIfAbsent(plugin.getInfo().name(),
+                name -> context.getServer().translatePluginName(plugin)), false);
+        builder.setFooter(template.usedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public MessageEmbed cooldown(CommandContext context, long leftCooldown) {
+        Template template = this.getTemplate(context.getServer());
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(leftCooldown);
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(leftCooldown) - TimeUnit.MINUTES.toSeconds(minutes);
+        EmbedBuilder builder = this.create(context, LupoColor.DARK_GRAY);
+        builder.setDescription(template.cooldown.fill(minutes + " " + template.minutes + ", " + seconds + " " + template.seconds));
+        builder.setFooter(template.usedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public MessageEmbed staffPower(CommandContext context, long power) {
+        Template template = this.getTemplate(context.getServer());
+        EmbedBuilder builder = this.create(context, LupoColor.DARK_GRAY);
+        builder.setDescription(template.noUserPermission);
+        builder.addField(template.staffPowerSet, context.getServer().formatLong(power), false);
+        builder.addField(template.staffPowerNeeded, context.getCommand().getInfo().name(), false);
+        builder.setFooter(template.usedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public MessageEmbed disabled(CommandContext context) {
+        Template template = this.getTemplate(context.getServer());
+        EmbedBuilder builder = this.create(context, LupoColor.RED);
+        builder.setDescription(template.disabled);
+        builder.setFooter(template.usedCommand.fill(context.getServer().getPrefix() + context.getLabel()));
+        return builder.build();
+    }
+
+    public String disabledSupport(CommandContext context) {
+        return this.getTemplate(context.getServer()).disabledSupport;
+    }
+
+    public String busy(CommandContext context) {
+        return this.getTemplate(context.getServer()).busy;
+    }
+
+    private EmbedBuilder create(CommandContext context, LupoColor color) {
+        EmbedBuilder builder = new EmbedBuilder();
+        builder.setAuthor(context.getMember().getUser().getAsTag() + " (" + context.getMember().getId() + ")", null, context.getMember().getUser().getAvatarUrl());
+        builder.setColor(color.getColor());
+        return builder;
+    }
+
+    private Template getTemplate(LupoServer server) {
+        try {
+            return this.templates.get(server.getLanguage() + PARAM + server.getPrefix(), () -> new Template(server));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class Template {
+
+        private final String notFound, noUserPermission, noBotPermission, permission, plugin, minutes, seconds,
+                staffPowerSet, staffPowerNeeded, disabled, disabledSupport, busy;
+        private final Text triedCommand, usedCommand, noPlugin, cooldown;
+        private final Map<String, String> pluginNames = new ConcurrentHashMap<>();
+
+        private Template(LupoServer server) {
+            this.notFound = server.translate(null, "core_command-not-found");
+            this.noUserPermission = server.translate(null, "core_command-no-user-permission");
+            this.noBotPermission = server.translate(null, "core_command-no-bot-permission");
+            this.permission = server.translate(null, "core_command-permission");
+            this.plugin = server.translate(null, "core_command-plugin");
+            this.minutes = server.translate(null, "core_minutes");
+            this.seconds = server.translate(null, "core_seconds");
+            this.staffPowerSet = server.translate(null, "core_command-staff-power-set");
+            this.staffPowerNeeded = server.translate(null, "core_command-staff-power-needed");
+            this.disabled = server.translate(null, "core_command-disabled");
+            this.disabledSupport = server.translate(null, "core_command-disabled-link-support");
+            this.busy = server.translate(null, "core_command-busy");
+            // formatted once with a placeholder, so the result is the same as formatting it with the actual value
+            this.triedCommand = new Text(server.translate(null, "core_tried-command", PARAM));
+            this.usedCommand = new Text(server.translate(null, "core_used-command", PARAM));
+            this.noPlugin = new Text(server.translate(null, "core_command-no-plugin", PARAM));
+            this.cooldown = new Text(server.translate(null, "core_command-cooldown", PARAM));
+        }
+    }
+
+    private static class Text {
+
+        private final String[] parts;
+
+        private Text(String formatted) {
+            this.parts = formatted.split(PARAM, -1);
+        }
+
+        private String fill(String value) {
+            if (this.parts.length == 1) {
+                return this.parts[0];
+            }
+            StringBuilder builder = new StringBuilder(this.parts[0]);
+            for (int i = 1; i < this.parts.length; i++) {
+                builder.append(value).append(this.parts[i]);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -18,6 +18,18 @@ public class BotController {
         app.routes(() -> {
             path("v1/bot", () -> {
                 get(this::getBot);
+                path("cache", () -> {
+                    get(this::getCache);
+                });
+                path("save", () -> {
+                    get(this::getSave);
+                });
+                path("commands", () -> {
+                    get(this::getCommands);
+                });
+                path("messages", () -> {
+                    get(this::getMessages);
+                });
                 path("update-commands", () -> {
                    post(this::updateCommands);
                 });
@@ -51,6 +63,27 @@ public class BotController {
         ctx.status(201).result(new Document(jsonObject).convertToJson());
     }
 
+    public void getCache(Context ctx) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.add(LupoBot.getInstance().getServers().getName(), LupoBot.getInstance().getServers().getStatsObject());
+        jsonObject.add(LupoBot.getInstance().getUsers().getName(), LupoBot.getInstance().getUsers().getStatsObject());
+        ctx.status(201).result(new Document(jsonObject).convertToJson());
+    }
+
+    public void getSave(Context ctx) {
+        ctx.status(201).result(new Document(LupoBot.getInstance().getSaveStatistics().getStatsObject()).convertToJson());
+    }
+
+    public void getCommands(Context ctx) {
+        JsonObject jsonObject = LupoBot.getInstance().getCommandHandler().getCommandExecutor().getStatsObject();
+        jsonObject.add("cooldowns", LupoBot.getInstance().getCommandHandler().getCooldownService().getStatsObject());
+        ctx.status(201).result(new Document(jsonObject).convertToJson());
+    }
+
+    public void getMessages(Context ctx) {
+        ctx.status(201).result(new Document(LupoBot.getInstance().getMessageScheduler().getStatsObject()).convertToJson());
+    }
+
     public void updateCommands(Context ctx) {
         LupoBot.getInstance().getCommandHandler().registerSlashCommands();
     }
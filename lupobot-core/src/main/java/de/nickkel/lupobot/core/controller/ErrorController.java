@@ -0,0 +1,42 @@
+package de.nickkel.lupobot.core.controller;
+
+import de.nickkel.lupobot.core.LupoBot;
+import de.nickkel.lupobot.core.command.ErrorReporter;
+import de.nickkel.lupobot.core.config.Document;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import static io.javalin.apibuilder.ApiBuilder.*;
+
+public class ErrorController {
+
+    public ErrorController(Javalin app) {
+        app.routes(() -> {
+            path("v1/errors", () -> {
+                get(this::getErrors);
+                delete(this::clearErrors);
+                path(":fingerprint", () -> {
+                    get(this::getError);
+                });
+            });
+        });
+    }
+
+    public void getErrors(Context ctx) {
+        ctx.status(201).result(new Document(LupoBot.getInstance().getCommandHandler().getErrorReporter().getStatsObject()).convertToJson());
+    }
+
+    public void getError(Context ctx) {
+        ErrorReporter.ReportedError error = LupoBot.getInstance().getCommandHandler().getErrorReporter().getError(ctx.pathParam("fingerprint"));
+        if (error == null) {
+            ctx.status(404).result("Not found");
+        } else {
+            ctx.status(201).result(new Document(error.getStatsObject(true)).convertToJson());
+        }
+    }
+
+    public void clearErrors(Context ctx) {
+        LupoBot.getInstance().getCommandHandler().getErrorReporter().clear();
+        ctx.status(201);
+    }
+}
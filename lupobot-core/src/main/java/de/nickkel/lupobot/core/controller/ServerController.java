@@ -2,8 +2,6 @@ package de.nickkel.lupobot.core.controller;
 
 import com.google.gson.JsonObject;
 import com.mongodb.BasicDBObject;
-import com.mongodb.DB;
-import com.mongodb.DBCollection;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.config.Document;
 import de.nickkel.lupobot.core.data.LupoServer;
@@ -79,6 +77,7 @@ public class ServerController {
                 } catch (NumberFormatException e) {
                     server.getData().append(key, value);
                 }
+                server.markDirty(key);
                 ctx.status(201);
             }
         } else {
@@ -2,8 +2,6 @@ package de.nickkel.lupobot.core.controller;
 
 import com.google.gson.JsonObject;
 import com.mongodb.BasicDBObject;
-import com.mongodb.DB;
-import com.mongodb.DBCollection;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.config.Document;
 import de.nickkel.lupobot.core.data.LupoUser;
@@ -31,10 +29,7 @@ public class UserController {
     }
 
     public void getTotalUsers(Context ctx) {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("users");
-        ctx.result(new Document().append("totalUsers", collection.getCount()).convertToJson());
+        ctx.result(LupoBot.getInstance().getDataStore().count("users").thenApply(count -> new Document().append("totalUsers", count).convertToJson()));
     }
 
     public void getUsers(Context ctx) {
@@ -94,6 +89,7 @@ public class UserController {
                 } catch (NumberFormatException e) {
                     user.getData().append(key, value);
                 }
+                user.markDirty(key);
                 ctx.status(201);
             }
         } else {
@@ -0,0 +1,116 @@
+package de.nickkel.lupobot.core.data;
+
+import com.google.gson.JsonObject;
+import com.mongodb.*;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import lombok.Getter;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class DataStore {
+
+    private final MongoClient client;
+    @Getter
+    private final MongoDatabase database;
+
+    public DataStore(JsonObject config) {
+        int minPoolSize = config.has("minPoolSize") ? config.get("minPoolSize").getAsInt() : 0;
+        int maxPoolSize = config.has("maxPoolSize") ? config.get("maxPoolSize").getAsInt() : 100;
+        long maxWaitTime = config.has("maxWaitTime") ? config.get("maxWaitTime").getAsLong() : 120000;
+
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(config.get("clientUri").getAsString()))
+                .applyToConnectionPoolSettings(builder -> builder
+                        .minSize(minPoolSize)
+                        .maxSize(maxPoolSize)
+                        .maxWaitTime(maxWaitTime, TimeUnit.MILLISECONDS))
+                .build();
+        this.client = MongoClients.create(settings);
+        this.database = this.client.getDatabase(config.get("name").getAsString());
+    }
+
+    public MongoCollection<BasicDBObject> getCollection(String name) {
+        return this.database.getCollection(name, BasicDBObject.class);
+    }
+
+    public CompletableFuture<BasicDBObject> findOne(String collection, Bson filter) {
+        return first(this.getCollection(collection).find(filter).first());
+    }
+
+    public CompletableFuture<List<BasicDBObject>> find(String collection, Bson filter, Bson sort, int limit) {
+        return list(this.getCollection(collection).find(filter).sort(sort).limit(limit));
+    }
+
+    // loads the document with the id of the template or creates it from the template, in one round trip
+    public CompletableFuture<BasicDBObject> findOrCreate(String collection, BasicDBObject template) {
+        return first(this.getCollection(collection).findOneAndUpdate(new BasicDBObject("_id", template.get("_id")), new BasicDBObject("$setOnInsert", template),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)));
+    }
+
+    public CompletableFuture<Void> update(String collection, Bson filter, Bson update) {
+        return first(this.getCollection(collection).updateOne(filter, update)).thenApply(result -> null);
+    }
+
+    public CompletableFuture<BulkWriteResult> bulkWrite(String collection, List<? extends WriteModel<? extends BasicDBObject>> models, BulkWriteOptions options) {
+        return first(this.getCollection(collection).bulkWrite(models, options));
+    }
+
+    public CompletableFuture<Void> delete(String collection, Bson filter) {
+        return first(this.getCollection(collection).deleteOne(filter)).thenApply(result -> null);
+    }
+
+    public CompletableFuture<Long> count(String collection) {
+        return first(this.getCollection(collection).estimatedDocumentCount());
+    }
+
+    public void close() {
+        this.client.close();
+    }
+
+    public static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+        return list(publisher).thenApply(results -> results.isEmpty() ? null : results.get(0));
+    }
+
+    public static <T> CompletableFuture<List<T>> list(Publisher<T> publisher) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private final List<T> results = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T result) {
+                this.results.add(result);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(this.results);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,91 @@
+package de.nickkel.lupobot.core.data;
+
+import com.google.common.hash.Hashing;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import de.nickkel.lupobot.core.LupoBot;
+import de.nickkel.lupobot.core.config.Document;
+import de.nickkel.lupobot.core.plugin.LupoPlugin;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class DataTemplate {
+
+    private final Document coreConfig;
+    private final Function<LupoPlugin, Document> pluginConfig;
+    private volatile BasicDBObject template;
+    private volatile Set<String> pluginNames;
+    @Getter
+    private volatile String version;
+
+    public DataTemplate(Document coreConfig, Function<LupoPlugin, Document> pluginConfig) {
+        this.coreConfig = coreConfig;
+        this.pluginConfig = pluginConfig;
+        this.compile();
+    }
+
+    // has to be called whenever a plugin is loaded or unloaded
+    public synchronized void compile() {
+        BasicDBObject template = BasicDBObject.parse(this.coreConfig.convertToJsonString());
+        Set<String> pluginNames = new HashSet<>();
+        for (LupoPlugin plugin : LupoBot.getInstance().getPlugins()) {
+            Document config = this.pluginConfig.apply(plugin);
+            if (config != null) {
+                template.append(plugin.getInfo().name(), BasicDBObject.parse(config.convertToJsonString()));
+                pluginNames.add(plugin.getInfo().name());
+            }
+        }
+
+        this.version = Hashing.murmur3_128().hashString(template.toJson(), StandardCharsets.UTF_8).toString();
+        this.template = template;
+        this.pluginNames = pluginNames;
+    }
+
+    public BasicDBObject create(Object id) {
+        BasicDBObject dbObject = (BasicDBObject) this.template.copy();
+        dbObject.append("_id", id);
+        dbObject.append("_schema", this.version);
+        return dbObject;
+    }
+
+    // adds missing core and plugin data, documents with the current schema version are skipped
+    public void merge(BasicDBObject data, Consumer<String> markDirty) {
+        String version = this.version;
+        if (version.equals(data.getString("_schema"))) {
+            return;
+        }
+
+        BasicDBObject template = this.template;
+        for (String key : template.keySet()) {
+            if (!data.containsKey(key)) {
+                data.append(key, copy(template.get(key)));
+                markDirty.accept(key);
+            } else if (this.pluginNames.contains(key) && data.get(key) instanceof BasicDBObject) {
+                BasicDBObject dbObject = (BasicDBObject) data.get(key);
+                BasicDBObject pluginTemplate = (BasicDBObject) template.get(key);
+                for (String pluginKey : pluginTemplate.keySet()) {
+                    if (!dbObject.containsKey(pluginKey)) {
+                        dbObject.append(pluginKey, copy(pluginTemplate.get(pluginKey)));
+                        markDirty.accept(key + "." + pluginKey);
+                    }
+                }
+            }
+        }
+        data.append("_schema", version);
+        markDirty.accept("_schema");
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof BasicDBObject) {
+            return ((BasicDBObject) value).copy();
+        } else if (value instanceof BasicDBList) {
+            return ((BasicDBList) value).copy();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package de.nickkel.lupobot.core.data;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DirtyTracker {
+
+    private final Set<String> paths = ConcurrentHashMap.newKeySet();
+
+    public void mark(String path) {
+        this.paths.add(path);
+    }
+
+    public boolean isDirty() {
+        return !this.paths.isEmpty();
+    }
+
+    // removes all changed paths and turns their current values into a $set/$unset update
+    // the values are copied, the update is encoded later on another thread while commands keep changing the data
+    public BasicDBObject drain(BasicDBObject data) {
+        List<String> drained = new ArrayList<>();
+        Iterator<String> iterator = this.paths.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+
+        // mongo refuses updates with conflicting paths, a changed parent already contains its children
+        drained.sort(Comparator.comparingInt(String::length));
+        Set<String> kept = new HashSet<>();
+        BasicDBObject set = new BasicDBObject(), unset = new BasicDBObject();
+        for (String path : drained) {
+            if (hasChangedParent(kept, path)) {
+                continue;
+            }
+            kept.add(path);
+
+            Object parent = data;
+            String[] keys = path.split("\\.");
+            for (int i = 0; i < keys.length-1 && parent != null; i++) {
+                parent = parent instanceof Map ? ((Map<?, ?>) parent).get(keys[i]) : null;
+            }
+            String key = keys[keys.length-1];
+            if (parent instanceof Map && ((Map<?, ?>) parent).containsKey(key)) {
+                try {
+                    set.append(path, copy(((Map<?, ?>) parent).get(key)));
+                } catch (ConcurrentModificationException e) { // changed while copying, written with the next save
+                    this.paths.add(path);
+                }
+            } else {
+                unset.append(path, "");
+            }
+        }
+
+        BasicDBObject update = new BasicDBObject();
+        if (!set.isEmpty()) {
+            update.append("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.append("$unset", unset);
+        }
+        return update;
+    }
+
+    // marks the paths of an update again, used if it could not be written
+    public void restore(BasicDBObject update) {
+        for (String operator : update.keySet()) {
+            this.paths.addAll(((BasicDBObject) update.get(operator)).keySet());
+        }
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof List) {
+            List<Object> copy = value instanceof BasicDBList ? new BasicDBList() : new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                copy.add(copy(element));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            BasicDBObject copy = new BasicDBObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(String.valueOf(entry.getKey()), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        return value;
+    }
+
+    private boolean hasChangedParent(Set<String> kept, String path) {
+        int index = path.indexOf('.');
+        while (index != -1) {
+            if (kept.contains(path.substring(0, index))) {
+                return true;
+            }
+            index = path.indexOf('.', index+1);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+package de.nickkel.lupobot.core.data;
+
+import com.google.common.cache.*;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.JsonObject;
+import de.nickkel.lupobot.core.LupoBot;
+import de.nickkel.lupobot.core.config.Document;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class EntityCache<T> {
+
+    @Getter
+    private final String name;
+    @Getter
+    private final long maximumSize, expireAfterAccess;
+    private final Cache<Long, T> cache;
+    @Getter
+    private final EntityLoader<T> loader;
+    private final AtomicLong evictions = new AtomicLong();
+
+    // writeBack saves the changes of an entity and returns null if it has none
+    public EntityCache(String name, long maximumSize, long expireAfterAccess, Function<T, CompletableFuture<Void>> writeBack) {
+        this.name = name;
+
+        // configs/config.json can override the defaults per cache
+        Document config = LupoBot.getInstance().getConfig();
+        if (config.has("cache") && config.getJsonElement("cache").getAsJsonObject().has(name)) {
+            JsonObject jsonObject = config.getJsonElement("cache").getAsJsonObject().get(name).getAsJsonObject();
+            if (jsonObject.has("maximumSize")) {
+                maximumSize = jsonObject.get("maximumSize").getAsLong();
+            }
+            if (jsonObject.has("expireAfterAccess")) {
+                expireAfterAccess = jsonObject.get("expireAfterAccess").getAsLong();
+            }
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterAccess = expireAfterAccess;
+
+        // write back dirty entities before they are dropped, the loader hands them out again until the write is done
+        this.loader = new EntityLoader<>(this, writeBack);
+        RemovalListener<Long, T> listener = notification -> {
+            if (notification.wasEvicted() && notification.getValue() != null) {
+                this.evictions.incrementAndGet();
+                this.loader.writeBack(notification.getKey(), notification.getValue());
+            }
+        };
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterAccess(this.expireAfterAccess, TimeUnit.MINUTES)
+                .removalListener(listener)
+                .build();
+    }
+
+    public T get(long id) {
+        return this.cache.getIfPresent(id);
+    }
+
+    public T get(long id, Callable<? extends T> loader) {
+        try {
+            return this.cache.get(id, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public boolean contains(long id) {
+        return this.cache.getIfPresent(id) != null;
+    }
+
+    public void invalidate(long id) {
+        this.cache.invalidate(id);
+    }
+
+    public Collection<T> values() {
+        return this.cache.asMap().values();
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    public void cleanUp() {
+        this.cache.cleanUp();
+    }
+
+    public JsonObject getStatsObject() {
+        JsonObject jsonObject = this.loader.getStatsObject();
+        jsonObject.addProperty("size", this.cache.size());
+        jsonObject.addProperty("maximumSize", this.maximumSize);
+        jsonObject.addProperty("expireAfterAccess", this.expireAfterAccess);
+        jsonObject.addProperty("evictions", this.evictions.get());
+        return jsonObject;
+    }
+}
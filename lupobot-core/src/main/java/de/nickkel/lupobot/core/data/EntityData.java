@@ -0,0 +1,47 @@
+package de.nickkel.lupobot.core.data;
+
+import org.bson.codecs.pojo.annotations.BsonIgnore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// typed view on the data of a plugin, subclasses need a no-args constructor and getters/setters for their fields
+public abstract class EntityData {
+
+    @BsonIgnore
+    private final Set<String> dirtyPaths = ConcurrentHashMap.newKeySet();
+    @BsonIgnore
+    private volatile Consumer<String> markDirty;
+
+    void bind(Consumer<String> markDirty) {
+        this.markDirty = markDirty;
+    }
+
+    // has to be called after changing a field, the path is relative to the plugin data, e.g. "xp.<id>.level"
+    public void markDirty(String path) {
+        this.dirtyPaths.add(path);
+        Consumer<String> markDirty = this.markDirty;
+        if (markDirty != null) {
+            markDirty.accept(path);
+        }
+    }
+
+    List<String> drainDirtyPaths() {
+        List<String> drained = new ArrayList<>();
+        Iterator<String> iterator = this.dirtyPaths.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    // marks the paths of a failed flush again
+    void restoreDirtyPaths(List<String> paths) {
+        this.dirtyPaths.addAll(paths);
+    }
+}
@@ -0,0 +1,117 @@
+package de.nickkel.lupobot.core.data;
+
+import com.mongodb.BasicDBObject;
+import de.nickkel.lupobot.core.LupoBot;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class EntityDataHolder {
+
+    private final Map<Class<?>, EntityData> instances = new ConcurrentHashMap<>();
+
+    // decodes the plugin data once, the instance stays cached as long as the entity
+    public <T extends EntityData> T get(Class<T> type, BasicDBObject data, Consumer<String> markDirty) {
+        return type.cast(this.instances.computeIfAbsent(type, key -> {
+            EntityDataRegistry registry = LupoBot.getInstance().getEntityDataRegistry();
+            String plugin = registry.getPluginName(type);
+            EntityData entityData = registry.decode(type, (BasicDBObject) data.get(plugin));
+            entityData.bind(path -> markDirty.accept(plugin + "." + path));
+            return entityData;
+        }));
+    }
+
+    // writes changed fields of the typed instances into the document, has to happen before it gets drained
+    public void flush(BasicDBObject data, Consumer<String> markDirty) {
+        this.flush(null, data, markDirty);
+    }
+
+    // has to be called before the plugin data is changed without the typed instance, it gets decoded again on next access
+    public void invalidate(String plugin, BasicDBObject data, Consumer<String> markDirty) {
+        this.flush(plugin, data, markDirty);
+    }
+
+    // the journal thread and the saves flush the same entity, setters of the typed data are plain field writes without a lock
+    // so an encoding which fails because of a concurrent change keeps the paths for the next flush
+    private synchronized void flush(String invalidatedPlugin, BasicDBObject data, Consumer<String> markDirty) {
+        if (this.instances.isEmpty()) {
+            return;
+        }
+
+        EntityDataRegistry registry = LupoBot.getInstance().getEntityDataRegistry();
+        Iterator<Map.Entry<Class<?>, EntityData>> iterator = this.instances.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Class<?>, EntityData> entry = iterator.next();
+            if (!registry.isRegistered(entry.getKey())) { // plugin has been unloaded
+                iterator.remove();
+                continue;
+            }
+
+            String plugin = registry.getPluginName(entry.getKey());
+            if (invalidatedPlugin != null && !invalidatedPlugin.equals(plugin)) {
+                continue;
+            }
+            if (invalidatedPlugin != null) {
+                iterator.remove();
+            }
+
+            List<String> paths = entry.getValue().drainDirtyPaths();
+            if (paths.isEmpty()) {
+                continue;
+            }
+            BasicDBObject encoded;
+            try {
+                encoded = registry.encode(entry.getValue());
+            } catch (RuntimeException e) {
+                entry.getValue().restoreDirtyPaths(paths);
+                if (invalidatedPlugin != null) { // the raw data must not be changed while the typed instance has unwritten changes
+                    this.instances.put(entry.getKey(), entry.getValue());
+                    throw e;
+                }
+                LupoBot.getInstance().getLogger().warn("Could not encode data of plugin " + plugin + ", trying again with the next flush: " + e);
+                continue;
+            }
+            if (!(data.get(plugin) instanceof BasicDBObject)) {
+                data.append(plugin, new BasicDBObject());
+            }
+            for (String path : paths) {
+                markDirty.accept(plugin + "." + copy(encoded, (BasicDBObject) data.get(plugin), path));
+            }
+        }
+    }
+
+    // copies the value of the path and returns the path which actually changed, a removed parent is removed as a whole
+    private static String copy(BasicDBObject source, BasicDBObject target, String path) {
+        String[] keys = path.split("\\.");
+        Object sourceParent = source;
+        BasicDBObject targetParent = target;
+        for (int i = 0; i < keys.length-1; i++) {
+            Object sourceChild = ((Map<?, ?>) sourceParent).get(keys[i]);
+            if (!(sourceChild instanceof Map)) {
+                if (sourceChild == null) {
+                    targetParent.remove(keys[i]);
+                } else {
+                    targetParent.append(keys[i], sourceChild);
+                }
+                return String.join(".", Arrays.copyOf(keys, i+1));
+            }
+            if (!(targetParent.get(keys[i]) instanceof BasicDBObject)) {
+                targetParent.append(keys[i], new BasicDBObject());
+            }
+            sourceParent = sourceChild;
+            targetParent = (BasicDBObject) targetParent.get(keys[i]);
+        }
+
+        String key = keys[keys.length-1];
+        if (((Map<?, ?>) sourceParent).containsKey(key)) {
+            targetParent.append(key, ((Map<?, ?>) sourceParent).get(key));
+        } else {
+            targetParent.remove(key);
+        }
+        return path;
+    }
+}
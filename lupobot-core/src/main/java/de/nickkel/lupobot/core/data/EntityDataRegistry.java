@@ -0,0 +1,74 @@
+package de.nickkel.lupobot.core.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClientSettings;
+import de.nickkel.lupobot.core.plugin.LupoPlugin;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class EntityDataRegistry {
+
+    private final CodecRegistry defaultRegistry = MongoClientSettings.getDefaultCodecRegistry();
+    private final Map<Class<?>, Registration> registrations = new ConcurrentHashMap<>();
+
+    public void register(LupoPlugin plugin, Class<? extends EntityData> type) {
+        // every type gets its own provider, so the class models of an unloaded plugin can be collected
+        CodecRegistry registry = CodecRegistries.fromRegistries(this.defaultRegistry,
+                CodecRegistries.fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        this.registrations.put(type, new Registration(plugin.getInfo().name(), registry));
+    }
+
+    public void unregister(LupoPlugin plugin) {
+        this.registrations.values().removeIf(registration -> registration.plugin.equals(plugin.getInfo().name()));
+    }
+
+    public boolean isRegistered(Class<?> type) {
+        return this.registrations.containsKey(type);
+    }
+
+    public String getPluginName(Class<?> type) {
+        return this.getRegistration(type).plugin;
+    }
+
+    public <T extends EntityData> T decode(Class<T> type, BasicDBObject data) {
+        CodecRegistry registry = this.getRegistration(type).registry;
+        BsonDocument document = data == null ? new BsonDocument() : data.toBsonDocument(BasicDBObject.class, registry);
+        return registry.get(type).decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @SuppressWarnings("unchecked")
+    public BasicDBObject encode(EntityData data) {
+        CodecRegistry registry = this.getRegistration(data.getClass()).registry;
+        BsonDocument document = new BsonDocument();
+        ((Codec<EntityData>) registry.get(data.getClass())).encode(new BsonDocumentWriter(document), data, EncoderContext.builder().build());
+        return registry.get(BasicDBObject.class).decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    private Registration getRegistration(Class<?> type) {
+        Registration registration = this.registrations.get(type);
+        if (registration == null) {
+            throw new IllegalArgumentException("Data class " + type.getName() + " is not registered by any plugin");
+        }
+        return registration;
+    }
+
+    private static class Registration {
+        private final String plugin;
+        private final CodecRegistry registry;
+
+        private Registration(String plugin, CodecRegistry registry) {
+            this.plugin = plugin;
+            this.registry = registry;
+        }
+    }
+}
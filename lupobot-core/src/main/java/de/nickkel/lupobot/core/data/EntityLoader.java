@@ -0,0 +1,185 @@
+package de.nickkel.lupobot.core.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.JsonObject;
+import com.mongodb.BasicDBObject;
+import de.nickkel.lupobot.core.LupoBot;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class EntityLoader<T> {
+
+    private final EntityCache<T> cache;
+    private final Function<T, CompletableFuture<Void>> save;
+    private final Map<Long, CompletableFuture<T>> loading = new ConcurrentHashMap<>();
+    // evicted entities until their changes are written, a load takes them back instead of reading an old state
+    private final Map<Long, T> writingBack = new ConcurrentHashMap<>(), failed = new ConcurrentHashMap<>();
+    // time of the last finished write back, a read which was sent before could have missed it
+    private final Cache<Long, Long> writtenBack = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).build();
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), loads = new AtomicLong(), loadFailures = new AtomicLong(),
+            restored = new AtomicLong(), totalLoadTime = new AtomicLong();
+
+    // save returns null if the entity has nothing left to write
+    EntityLoader(EntityCache<T> cache, Function<T, CompletableFuture<Void>> save) {
+        this.cache = cache;
+        this.save = save;
+    }
+
+    public CompletableFuture<T> load(long id, Supplier<CompletableFuture<BasicDBObject>> fetch, Function<BasicDBObject, T> create) {
+        T cached = this.cache.get(id);
+        if (cached != null) {
+            this.hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // collapse concurrent loads of the same id into one in-flight request
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = this.loading.putIfAbsent(id, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        this.misses.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> load;
+        try {
+            T entity = this.restore(id); // another load could have finished in the meantime
+            load = entity != null ? CompletableFuture.completedFuture(entity) : this.fetch(id, start, fetch, create);
+        } catch (Throwable throwable) {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(throwable);
+        }
+        // continue on the data threads, the database driver completes on its own threads
+        load.whenCompleteAsync((result, throwable) -> {
+            this.loading.remove(id, future);
+            if (throwable == null) {
+                this.loads.incrementAndGet();
+                this.totalLoadTime.addAndGet(System.nanoTime()-start);
+                future.complete(result);
+            } else {
+                this.loadFailures.incrementAndGet();
+                future.completeExceptionally(throwable);
+            }
+        }, LupoBot.getInstance().getDataService());
+        return future;
+    }
+
+    // the cached entity or null, for hot paths which fall back to load
+    public T getIfLoaded(long id) {
+        T cached = this.cache.get(id);
+        if (cached != null) {
+            this.hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    private CompletableFuture<T> fetch(long id, long start, Supplier<CompletableFuture<BasicDBObject>> fetch, Function<BasicDBObject, T> create) {
+        return fetch.get().thenCompose(data -> {
+            T entity = this.restore(id);
+            if (entity != null) {
+                return CompletableFuture.completedFuture(entity);
+            }
+            // evicted right before the read was sent and written back while it ran, the read may not contain the changes
+            Long written = this.writtenBack.getIfPresent(id);
+            if (written != null && written-start > 0) {
+                return this.fetch(id, System.nanoTime(), fetch, create);
+            }
+            return CompletableFuture.completedFuture(this.cache.get(id, () -> create.apply(data)));
+        });
+    }
+
+    private T restore(long id) {
+        T cached = this.cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        T evicted = this.writingBack.get(id);
+        if (evicted == null) {
+            return null;
+        }
+        this.restored.incrementAndGet();
+        return this.cache.get(id, () -> evicted);
+    }
+
+    // called by the cache when it drops an entity, it is registered right away and saved off the thread which evicted it
+    void writeBack(long id, T entity) {
+        this.writingBack.put(id, entity);
+        LupoBot.getInstance().getDataService().execute(() -> this.save(id, entity));
+    }
+
+    // an evicted entity which is still changed by someone holding it is saved again until nothing is left
+    private void save(long id, T entity) {
+        CompletableFuture<Void> future;
+        try {
+            future = this.save.apply(entity);
+        } catch (Throwable throwable) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(throwable);
+        }
+        if (future == null) {
+            this.release(id, entity);
+            return;
+        }
+        future.whenCompleteAsync((result, throwable) -> {
+            if (this.cache.get(id) == entity) { // taken back by a load, saved with the next save
+                this.release(id, entity);
+            } else if (throwable != null) { // kept for loads, tried again with the next save
+                this.failed.put(id, entity);
+            } else {
+                this.save(id, entity);
+            }
+        }, LupoBot.getInstance().getDataService());
+    }
+
+    public void retryWriteBacks() {
+        for (Map.Entry<Long, T> entry : this.failed.entrySet()) {
+            if (this.failed.remove(entry.getKey(), entry.getValue())) {
+                this.writeBack(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    // evicted entities which are not written yet, failed ones included, their journal must be kept
+    public boolean hasPendingWriteBacks() {
+        return !this.writingBack.isEmpty();
+    }
+
+    private void release(long id, T entity) {
+        // before it is released, a load which does not find it anymore has to see the time
+        this.writtenBack.put(id, System.nanoTime());
+        this.writingBack.remove(id, entity);
+    }
+
+    public JsonObject getStatsObject() {
+        long hits = this.hits.get(), misses = this.misses.get(), loads = this.loads.get();
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("hits", hits);
+        jsonObject.addProperty("misses", misses);
+        jsonObject.addProperty("hitRate", hits+misses == 0 ? 1.0 : (double) hits/(hits+misses));
+        jsonObject.addProperty("loads", loads);
+        jsonObject.addProperty("loadFailures", this.loadFailures.get());
+        jsonObject.addProperty("restored", this.restored.get());
+        jsonObject.addProperty("writingBack", this.writingBack.size());
+        jsonObject.addProperty("averageLoadMillis", loads == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(this.totalLoadTime.get()/loads));
+        return jsonObject;
+    }
+
+    // waits for a load outside of the data threads, loads complete on them so waiting there could block all of them
+    public static <T> T await(CompletableFuture<T> future) {
+        T entity = future.getNow(null);
+        if (entity != null) {
+            return entity;
+        }
+        if (LupoBot.isDataThread()) {
+            throw new IllegalStateException("Can not wait for an entity on a data thread, it has to be loaded asynchronously before");
+        }
+        return future.join();
+    }
+}
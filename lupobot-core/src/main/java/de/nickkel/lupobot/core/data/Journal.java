@@ -0,0 +1,269 @@
+package de.nickkel.lupobot.core.data;
+
+import com.google.gson.JsonObject;
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import de.nickkel.lupobot.core.LupoBot;
+import lombok.Getter;
+import org.bson.ByteBuf;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// append-only log of entity updates, replayed on startup so changes since the last save survive a crash
+public class Journal {
+
+    private static final String PREFIX = "journal-", SUFFIX = ".log";
+
+    @Getter
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitInterval;
+    private final Codec<BasicDBObject> codec = MongoClientSettings.getDefaultCodecRegistry().get(BasicDBObject.class);
+    private final Set<JournalTracker> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger runningWrites = new AtomicInteger();
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer buffer;
+    private long segment;
+    private boolean written;
+    private volatile boolean running;
+
+    public Journal(JsonObject config) {
+        this.enabled = config != null && (!config.has("enabled") || config.get("enabled").getAsBoolean());
+        this.directory = Paths.get(config != null && config.has("directory") ? config.get("directory").getAsString() : "journal");
+        this.segmentSize = config != null && config.has("segmentSize") ? config.get("segmentSize").getAsInt() : 64*1024*1024;
+        this.commitInterval = config != null && config.has("commitInterval") ? config.get("commitInterval").getAsLong() : 50;
+    }
+
+    public void start() {
+        if (!this.enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            List<Long> segments = this.getSegments();
+            this.openSegment(segments.isEmpty() ? 0 : segments.get(segments.size()-1)+1, this.segmentSize);
+        }
+        this.running = true;
+        Thread thread = new Thread(() -> {
+            // group commit, all changes of an interval are written and forced to disk together
+            while (this.running) {
+                try {
+                    Thread.sleep(this.commitInterval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    this.commit();
+                } catch (Exception e) {
+                    LupoBot.getInstance().getLogger().error("Could not write journal:", e);
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.setName("Journal Thread");
+        thread.start();
+    }
+
+    void queue(JournalTracker tracker) {
+        this.pending.add(tracker);
+    }
+
+    // writes all queued changes, has to be called after draining entities and before writing them to the database
+    public synchronized void commit() {
+        if (!this.enabled || this.buffer == null) {
+            return;
+        }
+
+        List<JournalTracker> failed = new ArrayList<>();
+        Iterator<JournalTracker> iterator = this.pending.iterator();
+        while (iterator.hasNext()) {
+            JournalTracker tracker = iterator.next();
+            iterator.remove();
+
+            BasicDBObject update = null;
+            try {
+                update = tracker.drain();
+                if (!update.isEmpty()) {
+                    this.append(new BasicDBObject("c", tracker.getCollection()).append("i", tracker.getId()).append("u", update));
+                }
+            } catch (RuntimeException e) { // the document was changed while draining or encoding it
+                if (update != null) {
+                    tracker.restore(update);
+                }
+                failed.add(tracker);
+            }
+        }
+        this.pending.addAll(failed);
+
+        if (this.written) {
+            this.buffer.force();
+            this.written = false;
+        }
+    }
+
+    // starts a new segment and returns the last one, which can be truncated once the following save succeeded
+    public synchronized long rotate() {
+        if (!this.enabled || this.buffer == null) {
+            return -1;
+        }
+        this.commit();
+        long segment = this.segment;
+        this.openSegment(segment+1, this.segmentSize);
+        return segment;
+    }
+
+    public void truncate(long segment) {
+        if (segment == -1 || this.runningWrites.get() != 0) { // a running write could still fail and needs its journal
+            return;
+        }
+        for (long number : this.getSegments()) {
+            if (number <= segment) {
+                try {
+                    Files.deleteIfExists(this.getPath(number));
+                } catch (IOException e) {
+                    LupoBot.getInstance().getLogger().warn("Could not delete journal segment " + number + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // keeps the journal of a write which is not part of a save task until it has finished
+    public <T> CompletableFuture<T> track(Supplier<CompletableFuture<T>> write) {
+        this.runningWrites.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = write.get();
+        } catch (RuntimeException e) {
+            this.runningWrites.decrementAndGet();
+            throw e;
+        }
+        return future.whenComplete((result, throwable) -> this.runningWrites.decrementAndGet());
+    }
+
+    public void replay(DataStore dataStore) {
+        List<Long> segments = this.getSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        LupoBot.getInstance().getLogger().info("Replaying " + segments.size() + " journal segments ...");
+        Map<String, List<UpdateOneModel<BasicDBObject>>> updates = new LinkedHashMap<>();
+        int records = 0;
+        for (long number : segments) {
+            for (BasicDBObject record : this.read(number)) {
+                updates.computeIfAbsent(record.getString("c"), collection -> new ArrayList<>())
+                        .add(new UpdateOneModel<>(new BasicDBObject("_id", record.get("i")), (BasicDBObject) record.get("u")));
+                records++;
+            }
+        }
+
+        // fails the startup, otherwise the next save would truncate segments which were never replayed
+        for (Map.Entry<String, List<UpdateOneModel<BasicDBObject>>> entry : updates.entrySet()) {
+            List<UpdateOneModel<BasicDBObject>> models = entry.getValue();
+            for (int i = 0; i < models.size(); i += 1000) {
+                dataStore.bulkWrite(entry.getKey(), models.subList(i, Math.min(i+1000, models.size())), new BulkWriteOptions().ordered(true)).join();
+            }
+        }
+        this.truncate(segments.get(segments.size()-1));
+        LupoBot.getInstance().getLogger().info("Replayed " + records + " journal records");
+    }
+
+    public void close() {
+        this.running = false;
+        this.commit();
+    }
+
+    private void append(BasicDBObject record) {
+        ByteBuf byteBuf = new RawBsonDocument(record, this.codec).getByteBuffer();
+        byte[] bytes = new byte[byteBuf.remaining()];
+        byteBuf.get(bytes);
+
+        if (this.buffer.remaining() < bytes.length+8) {
+            this.openSegment(this.segment+1, Math.max(this.segmentSize, bytes.length+8));
+        }
+        this.crc.reset();
+        this.crc.update(bytes, 0, bytes.length);
+        this.buffer.putInt(bytes.length);
+        this.buffer.putInt((int) this.crc.getValue());
+        this.buffer.put(bytes);
+        this.written = true;
+    }
+
+    private List<BasicDBObject> read(long number) {
+        List<BasicDBObject> records = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(this.getPath(number), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // unused space is zeroed, a torn record at the end fails its checksum
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != checksum) {
+                    LupoBot.getInstance().getLogger().warn("Journal segment " + number + " ends with a corrupted record, skipping the rest of it");
+                    break;
+                }
+                records.add(new RawBsonDocument(bytes).decode(this.codec));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read journal segment " + number, e);
+        }
+        return records;
+    }
+
+    private void openSegment(long number, int size) {
+        try {
+            Files.createDirectories(this.directory);
+            try (FileChannel channel = FileChannel.open(this.getPath(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // stays valid after closing the channel
+            }
+            this.segment = number;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create journal segment " + number, e);
+        }
+    }
+
+    private List<Long> getSegments() {
+        if (!Files.isDirectory(this.directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length()-SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list journal segments", e);
+        }
+    }
+
+    private Path getPath(long number) {
+        return this.directory.resolve(PREFIX + number + SUFFIX);
+    }
+}
@@ -0,0 +1,43 @@
+package de.nickkel.lupobot.core.data;
+
+import com.mongodb.BasicDBObject;
+import de.nickkel.lupobot.core.LupoBot;
+import lombok.Getter;
+
+import java.util.function.Supplier;
+
+// changed paths of an entity which are not written to the journal yet
+public class JournalTracker {
+
+    @Getter
+    private final String collection;
+    @Getter
+    private final Object id;
+    private final Supplier<BasicDBObject> data;
+    private final Runnable beforeDrain;
+    private final DirtyTracker paths = new DirtyTracker();
+
+    public JournalTracker(String collection, Object id, Supplier<BasicDBObject> data, Runnable beforeDrain) {
+        this.collection = collection;
+        this.id = id;
+        this.data = data;
+        this.beforeDrain = beforeDrain;
+    }
+
+    public void mark(String path) {
+        Journal journal = LupoBot.getInstance().getJournal();
+        if (journal != null && journal.isEnabled()) {
+            this.paths.mark(path);
+            journal.queue(this);
+        }
+    }
+
+    BasicDBObject drain() {
+        this.beforeDrain.run();
+        return this.paths.drain(this.data.get());
+    }
+
+    void restore(BasicDBObject update) {
+        this.paths.restore(update);
+    }
+}
@@ -2,7 +2,6 @@ package de.nickkel.lupobot.core.data;
 
 import com.google.gson.JsonObject;
 import com.mongodb.*;
-import com.mongodb.util.JSON;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.config.Document;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
@@ -17,6 +16,7 @@ import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 public class LupoServer {
 
@@ -30,25 +30,14 @@ public class LupoServer {
     private boolean slashInvisible;
     @Getter
     private BasicDBObject data;
+    private final DirtyTracker dirty = new DirtyTracker();
+    private final EntityDataHolder typedData = new EntityDataHolder();
+    private final JournalTracker journal;
 
-    public LupoServer(Guild guild) {
-        LupoBot.getInstance().getLogger().info("Loading server " + guild.getName() + " (" + guild.getIdLong() + ") " + "with " + guild.getMembers().size() + " members ...");
+    public LupoServer(Guild guild, BasicDBObject data) {
         this.guild = guild;
-
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("servers");
-        DBObject query = new BasicDBObject("_id", guild.getIdLong());
-        DBCursor cursor = collection.find(query);
-
-        try {
-            BasicDBObject dbObject = (BasicDBObject) JSON.parse(LupoBot.getInstance().getServerConfig().convertToJsonString());
-            dbObject.append("_id", guild.getIdLong());
-            collection.insert(dbObject);
-            this.data = dbObject;
-        } catch (DuplicateKeyException e) {
-            this.data = (BasicDBObject) cursor.one();
-        }
+        this.journal = new JournalTracker("servers", guild.getIdLong(), () -> this.data, () -> this.typedData.flush(this.data, this::mark));
+        this.data = data;
         this.prefix = this.data.getString("prefix");
         this.language = this.data.getString("language");
         this.slashInvisible = this.data.getBoolean("slashInvisible");
@@ -59,39 +48,66 @@ public class LupoServer {
             } else { // remove plugin if it doesn't exist anymore
                 dbList.remove(name);
                 this.data.append("plugins", dbList);
+                this.markDirty("plugins");
             }
         }
 
-        // merge missing core data
-        for (String key : LupoBot.getInstance().getServerConfig().getJsonObject().keySet()) {
-            if (!this.data.containsKey(key)) {
-                this.data.append(key, JSON.parse(new Document(LupoBot.getInstance().getServerConfig().getJsonElement(key).getAsJsonObject()).convertToJsonString()));
-            }
-        }
-
-        // merge missing plugin data
-        for (LupoPlugin plugin : LupoBot.getInstance().getPlugins()) {
-            if (plugin.getServerConfig() != null) {
-                if (!this.data.containsKey(plugin.getInfo().name())) {
-                    this.data.append(plugin.getInfo().name(), JSON.parse(new Document(plugin.getServerConfig().getJsonObject()).convertToJsonString()));
-                } else {
-                    BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
-                    for (String key : plugin.getServerConfig().getJsonObject().keySet()) {
-                        if (!dbObject.containsKey(key)) {
-                            dbObject.append(key, JSON.parse(new Document(plugin.getServerConfig().getJsonElement(key).getAsJsonObject()).convertToJsonString()));
-                        }
-                    }
-                }
-            }
-        }
-
-        LupoBot.getInstance().getServers().put(this.guild, this);
+        LupoBot.getInstance().getServerTemplate().merge(this.data, this::markDirty);
     }
 
     public void appendPluginData(LupoPlugin plugin, String key, Object val) {
+        this.typedData.invalidate(plugin.getInfo().name(), this.data, this::mark);
         BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
         dbObject.append(key, val);
-     }
+        this.markDirty(plugin, key);
+    }
+
+    public void removePluginData(LupoPlugin plugin, String key) {
+        this.typedData.invalidate(plugin.getInfo().name(), this.data, this::mark);
+        BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
+        dbObject.remove(key);
+        this.markDirty(plugin, key);
+    }
+
+    // has to be called after changing data in place, e.g. a nested object returned by getPluginData
+    public void markDirty(String path) {
+        this.mark(path);
+        saveQueue(this); // after marking, so a concurrent drain of the queue can't miss the path
+    }
+
+    private void mark(String path) {
+        this.dirty.mark(path);
+        this.journal.mark(path);
+    }
+
+    public void markDirty(LupoPlugin plugin, String key) {
+        this.markDirty(plugin.getInfo().name() + "." + key);
+    }
+
+    public boolean isDirty() {
+        return this.dirty.isDirty();
+    }
+
+    // used by the SaveDataTask to write many entities in one bulk operation
+    public BasicDBObject drainUpdate() {
+        this.typedData.flush(this.data, this::mark);
+        return this.dirty.drain(this.data);
+    }
+
+    public void restoreUpdate(BasicDBObject update) {
+        this.dirty.restore(update);
+        saveQueue(this);
+    }
+
+    // typed data of a plugin, e.g. server.data(LevelingData.class), the type has to be registered with LupoPlugin#registerData
+    public <T extends EntityData> T data(Class<T> type) {
+        return this.typedData.get(type, this.data, this::markDirty);
+    }
+
+    // writes back and drops the typed data of a plugin, used before it gets unloaded
+    public void releaseData(LupoPlugin plugin) {
+        this.typedData.invalidate(plugin.getInfo().name(), this.data, this::markDirty);
+    }
 
     public Object getPluginData(LupoPlugin plugin, String key) {
         BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
@@ -108,6 +124,7 @@ public class LupoServer {
         BasicDBList dbList = (BasicDBList) this.data.get("plugins");
         dbList.add(plugin.getInfo().name());
         this.data.append("plugins", dbList);
+        this.markDirty("plugins");
     }
 
     public void uninstallPlugin(LupoPlugin plugin) {
@@ -115,29 +132,43 @@ public class LupoServer {
         BasicDBList dbList = (BasicDBList) this.data.get("plugins");
         dbList.remove(plugin.getInfo().name());
         this.data.append("plugins", dbList);
+        this.markDirty("plugins");
     }
 
     public void setPrefix(String prefix) {
         this.prefix = prefix;
         this.data.append("prefix", prefix);
+        this.markDirty("prefix");
     }
 
     public void setLanguage(String language) {
         this.language = language;
         this.data.append("language", language);
+        this.markDirty("language");
     }
 
     public void setSlashInvisible(Boolean visible) {
         this.slashInvisible = visible;
-        this.data.append("slashVisible", visible);
+        this.data.append("slashInvisible", visible);
+        this.markDirty("slashInvisible");
     }
 
-    public void saveData() {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("servers");
-        DBObject query = new BasicDBObject("_id", guild.getIdLong());
-        collection.update(query, this.data);
+    public CompletableFuture<Void> saveData() {
+        // tracked before draining, the journal of the drained paths must not be truncated until they are written
+        return LupoBot.getInstance().getJournal().track(() -> {
+            BasicDBObject update = this.drainUpdate();
+            if (update.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            LupoBot.getInstance().getJournal().commit();
+            return LupoBot.getInstance().getDataStore().update("servers", new BasicDBObject("_id", this.guild.getIdLong()), update).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    this.restoreUpdate(update);
+                    LupoBot.getInstance().getLogger().error("Could not save server " + this.guild.getIdLong() + ":", throwable);
+                }
+            });
+        });
     }
 
     public String translate(LupoPlugin plugin, String key, Object... params) {
@@ -204,14 +235,15 @@ public class LupoServer {
     }
 
     public static LupoServer getByGuild(Guild guild) {
-        LupoServer server;
-        if (LupoBot.getInstance().getServers().containsKey(guild)) {
-            server = LupoBot.getInstance().getServers().get(guild);
-        } else {
-            server = new LupoServer(guild);
-        }
-        saveQueue(server);
-        return server;
+        return EntityLoader.await(loadByGuild(guild));
+    }
+
+    public static CompletableFuture<LupoServer> loadByGuild(Guild guild) {
+        return LupoBot.getInstance().getServers().getLoader().load(guild.getIdLong(), () -> {
+            LupoBot.getInstance().getLogger().info("Loading server " + guild.getName() + " (" + guild.getIdLong() + ") " + "with " + guild.getMembers().size() + " members ...");
+            BasicDBObject dbObject = LupoBot.getInstance().getServerTemplate().create(guild.getIdLong());
+            return LupoBot.getInstance().getDataStore().findOrCreate("servers", dbObject);
+        }, data -> new LupoServer(guild, data));
     }
 
     public static LupoServer getById(long id) {
@@ -239,8 +271,6 @@ public class LupoServer {
     }
 
     public static void saveQueue(LupoServer server) {
-        if (!LupoBot.getInstance().getSaveQueuedServers().contains(server)) {
-            LupoBot.getInstance().getSaveQueuedServers().add(server);
-        }
+        LupoBot.getInstance().getSaveQueuedServers().add(server);
     }
 }
@@ -1,19 +1,14 @@
 package de.nickkel.lupobot.core.data;
 
 import com.mongodb.*;
-import com.mongodb.util.JSON;
 import de.nickkel.lupobot.core.LupoBot;
-import de.nickkel.lupobot.core.command.LupoCommand;
-import de.nickkel.lupobot.core.config.Document;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
 import de.nickkel.lupobot.core.util.StaffGroup;
 import lombok.Getter;
 import net.dv8tion.jda.api.entities.Member;
-import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class LupoUser {
 
@@ -24,56 +19,19 @@ public class LupoUser {
     @Getter
     private final boolean isBot;
     @Getter
-    private final Map<LupoCommand, Long> cooldowns = new HashMap<>();
-    @Getter
     private BasicDBObject data;
+    private final DirtyTracker dirty = new DirtyTracker();
+    private final EntityDataHolder typedData = new EntityDataHolder();
+    private final JournalTracker journal;
 
-    public LupoUser(long id) {
-        this.id = id;
-        User discordUser = LupoBot.getInstance().getShardManager().retrieveUserById(id).complete();
+    public LupoUser(User discordUser, BasicDBObject data) {
+        this.id = discordUser.getIdLong();
+        this.journal = new JournalTracker("users", discordUser.getIdLong(), () -> this.data, () -> this.typedData.flush(this.data, this::mark));
         this.asMention = discordUser.getAsMention();
         this.isBot = discordUser.isBot();
-        LupoBot.getInstance().getLogger().info("Loading user " + discordUser.getAsTag() + " (" + id + ") ...");
-
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("users");
-        DBObject query = new BasicDBObject("_id", id);
-        DBCursor cursor = collection.find(query);
-
-        try {
-            BasicDBObject dbObject = (BasicDBObject) JSON.parse(LupoBot.getInstance().getUserConfig().convertToJsonString());
-            dbObject.append("_id", id);
-            collection.insert(dbObject);
-            this.data = dbObject;
-        } catch (DuplicateKeyException e) {
-            this.data = (BasicDBObject) cursor.one();
-        }
-
-        // merge missing core data
-        for (String key : LupoBot.getInstance().getUserConfig().getJsonObject().keySet()) {
-            if (!this.data.containsKey(key)) {
-                this.data.append(key, JSON.parse(new Document(LupoBot.getInstance().getUserConfig().getJsonElement(key).getAsJsonObject()).convertToJsonString()));
-            }
-        }
-
-        // merge missing plugin data
-        for (LupoPlugin plugin : LupoBot.getInstance().getPlugins()) {
-            if (plugin.getUserConfig() != null) {
-                if (!this.data.containsKey(plugin.getInfo().name())) {
-                    this.data.append(plugin.getInfo().name(), JSON.parse(new Document(plugin.getUserConfig().getJsonObject()).convertToJsonString()));
-                } else {
-                    BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
-                    for (String key : plugin.getUserConfig().getJsonObject().keySet()) {
-                        if (!dbObject.containsKey(key)) {
-                            dbObject.append(key, JSON.parse(new Document(plugin.getUserConfig().getJsonElement(key).getAsJsonObject()).convertToJsonString()));
-                        }
-                    }
-                }
-            }
-        }
+        this.data = data;
 
-        LupoBot.getInstance().getUsers().put(this.id, this);
+        LupoBot.getInstance().getUserTemplate().merge(this.data, this::markDirty);
     }
 
     public boolean isStaff() {
@@ -81,19 +39,61 @@ public class LupoUser {
     }
 
     public StaffGroup getStaffGroup() {
-        Member member = LupoBot.getInstance().getHub().retrieveMemberById(this.id).complete();
-        Role role = ((member.getRoles().size() > 0) ? member.getRoles().get(0) : null);
-        Document groups = new Document(LupoBot.getInstance().getConfig().getJsonElement("staffGroups").getAsJsonObject());
-        if (role != null && groups.has(role.getId())) {
-            return new StaffGroup(role);
-        } else {
-            return new StaffGroup(null);
-        }
+        return LupoBot.getInstance().getStaffIndex().get(this.id);
     }
 
     public void appendPluginData(LupoPlugin plugin, String key, Object val) {
+        this.typedData.invalidate(plugin.getInfo().name(), this.data, this::mark);
         BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
         dbObject.append(key, val);
+        this.markDirty(plugin, key);
+    }
+
+    public void removePluginData(LupoPlugin plugin, String key) {
+        this.typedData.invalidate(plugin.getInfo().name(), this.data, this::mark);
+        BasicDBObject dbObject = (BasicDBObject) this.data.get(plugin.getInfo().name());
+        dbObject.remove(key);
+        this.markDirty(plugin, key);
+    }
+
+    // has to be called after changing data in place, e.g. a nested object returned by getPluginData
+    public void markDirty(String path) {
+        this.mark(path);
+        saveQueue(this); // after marking, so a concurrent drain of the queue can't miss the path
+    }
+
+    private void mark(String path) {
+        this.dirty.mark(path);
+        this.journal.mark(path);
+    }
+
+    public void markDirty(LupoPlugin plugin, String key) {
+        this.markDirty(plugin.getInfo().name() + "." + key);
+    }
+
+    public boolean isDirty() {
+        return this.dirty.isDirty();
+    }
+
+    // used by the SaveDataTask to write many entities in one bulk operation
+    public BasicDBObject drainUpdate() {
+        this.typedData.flush(this.data, this::mark);
+        return this.dirty.drain(this.data);
+    }
+
+    public void restoreUpdate(BasicDBObject update) {
+        this.dirty.restore(update);
+        saveQueue(this);
+    }
+
+    // typed data of a plugin, the type has to be registered with LupoPlugin#registerData
+    public <T extends EntityData> T data(Class<T> type) {
+        return this.typedData.get(type, this.data, this::markDirty);
+    }
+
+    // writes back and drops the typed data of a plugin, used before it gets unloaded
+    public void releaseData(LupoPlugin plugin) {
+        this.typedData.invalidate(plugin.getInfo().name(), this.data, this::markDirty);
     }
 
     public Object getPluginData(LupoPlugin plugin, String key) {
@@ -106,23 +106,26 @@ public class LupoUser {
         return dbObject.getLong(key);
     }
 
-    public void saveData() {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("users");
-        DBObject query = new BasicDBObject("_id", this.id);
-        collection.update(query, this.data);
+    public CompletableFuture<Void> saveData() {
+        // tracked before draining, the journal of the drained paths must not be truncated until they are written
+        return LupoBot.getInstance().getJournal().track(() -> {
+            BasicDBObject update = this.drainUpdate();
+            if (update.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            LupoBot.getInstance().getJournal().commit();
+            return LupoBot.getInstance().getDataStore().update("users", new BasicDBObject("_id", this.id), update).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    this.restoreUpdate(update);
+                    LupoBot.getInstance().getLogger().error("Could not save user " + this.id + ":", throwable);
+                }
+            });
+        });
     }
 
     public static LupoUser getByDiscordUser(User discordUser) {
-        LupoUser user;
-        if (LupoBot.getInstance().getUsers().containsKey(discordUser.getIdLong())) {
-            user = LupoBot.getInstance().getUsers().get(discordUser.getIdLong());
-        } else {
-            user = new LupoUser(discordUser.getIdLong());
-        }
-        saveQueue(user);
-        return user;
+        return EntityLoader.await(loadByDiscordUser(discordUser));
     }
 
     public static LupoUser getByMember(Member member) {
@@ -130,6 +133,11 @@ public class LupoUser {
     }
 
     public static LupoUser getById(long id) {
+        LupoUser cached = LupoBot.getInstance().getUsers().get(id);
+        if (cached != null) {
+            return cached;
+        }
+
         User discordUser;
         try {
             discordUser = LupoBot.getInstance().getShardManager().retrieveUserById(id).complete();
@@ -141,9 +149,27 @@ public class LupoUser {
         return getByDiscordUser(discordUser);
     }
 
-    public static void saveQueue(LupoUser user) {
-        if (!LupoBot.getInstance().getSaveQueuedUsers().contains(user)) {
-            LupoBot.getInstance().getSaveQueuedUsers().add(user);
+    public static CompletableFuture<LupoUser> loadByDiscordUser(User discordUser) {
+        return LupoBot.getInstance().getUsers().getLoader().load(discordUser.getIdLong(), () -> {
+            LupoBot.getInstance().getLogger().info("Loading user " + discordUser.getAsTag() + " (" + discordUser.getIdLong() + ") ...");
+            BasicDBObject dbObject = LupoBot.getInstance().getUserTemplate().create(discordUser.getIdLong());
+            return LupoBot.getInstance().getDataStore().findOrCreate("users", dbObject);
+        }, data -> new LupoUser(discordUser, data));
+    }
+
+    public static CompletableFuture<LupoUser> loadByMember(Member member) {
+        return loadByDiscordUser(member.getUser());
+    }
+
+    public static CompletableFuture<LupoUser> loadById(long id) {
+        LupoUser cached = LupoBot.getInstance().getUsers().get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        return LupoBot.getInstance().getShardManager().retrieveUserById(id).submit().thenCompose(LupoUser::loadByDiscordUser);
+    }
+
+    public static void saveQueue(LupoUser user) {
+        LupoBot.getInstance().getSaveQueuedUsers().add(user);
     }
 }
@@ -0,0 +1,50 @@
+package de.nickkel.lupobot.core.data;
+
+import com.google.gson.JsonObject;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SaveStatistics {
+
+    private final AtomicLong flushes = new AtomicLong(), entities = new AtomicLong(), bytes = new AtomicLong(),
+            failures = new AtomicLong(), retries = new AtomicLong(), totalDuration = new AtomicLong();
+    @Getter
+    private volatile long lastEntities, lastBytes, lastFailures, lastDuration, lastFlush;
+
+    public void recordRetry() {
+        this.retries.incrementAndGet();
+    }
+
+    public void recordFlush(long entities, long bytes, long failures, long duration) {
+        this.flushes.incrementAndGet();
+        this.entities.addAndGet(entities);
+        this.bytes.addAndGet(bytes);
+        this.failures.addAndGet(failures);
+        this.totalDuration.addAndGet(duration);
+        this.lastEntities = entities;
+        this.lastBytes = bytes;
+        this.lastFailures = failures;
+        this.lastDuration = duration;
+        this.lastFlush = System.currentTimeMillis();
+    }
+
+    public JsonObject getStatsObject() {
+        JsonObject last = new JsonObject();
+        last.addProperty("time", this.lastFlush);
+        last.addProperty("entities", this.lastEntities);
+        last.addProperty("bytes", this.lastBytes);
+        last.addProperty("failures", this.lastFailures);
+        last.addProperty("durationMillis", this.lastDuration);
+
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("flushes", this.flushes.get());
+        jsonObject.addProperty("entities", this.entities.get());
+        jsonObject.addProperty("bytes", this.bytes.get());
+        jsonObject.addProperty("failures", this.failures.get());
+        jsonObject.addProperty("retries", this.retries.get());
+        jsonObject.addProperty("totalDurationMillis", this.totalDuration.get());
+        jsonObject.add("last", last);
+        return jsonObject;
+    }
+}
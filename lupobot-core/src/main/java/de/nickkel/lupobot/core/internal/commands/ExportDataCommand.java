@@ -90,6 +90,7 @@ public class ExportDataCommand extends LupoCommand {
                 serverFile.deleteOnExit();
             }
             context.getUser().getData().append("lastDataExport", System.currentTimeMillis());
+            context.getUser().markDirty("lastDataExport");
         });
     }
 
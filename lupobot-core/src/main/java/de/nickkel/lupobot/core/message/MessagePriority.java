@@ -0,0 +1,21 @@
+package de.nickkel.lupobot.core.message;
+
+import lombok.Getter;
+
+// ordered from the highest to the lowest priority
+public enum MessagePriority {
+
+    COMMAND("command", 10000),
+    LOG("log", 10000),
+    REMINDER("reminder", 50000);
+
+    @Getter
+    private final String key;
+    @Getter
+    private final int defaultCapacity;
+
+    MessagePriority(String key, int defaultCapacity) {
+        this.key = key;
+        this.defaultCapacity = defaultCapacity;
+    }
+}
@@ -0,0 +1,275 @@
+package de.nickkel.lupobot.core.message;
+
+import com.google.gson.JsonObject;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// sends messages by priority within a global rate, every route (channel or user) has only one request running at a time
+// waiting log embeds of a channel are sent together, up to 10 embeds in one message
+public class MessageScheduler {
+
+    private static final int MAX_EMBEDS = 10, MAX_EMBED_LENGTH = 6000;
+
+    private final Object lock = new Object();
+    private final Map<Long, Route> routes = new HashMap<>();
+    private final TreeSet<Route> ready = new TreeSet<>(Comparator.comparingInt((Route route) -> route.priority).thenComparingLong(route -> route.sequence));
+    private final MessagePriority[] priorities = MessagePriority.values();
+    private final int[] capacities = new int[this.priorities.length], queued = new int[this.priorities.length];
+    private final AtomicLong[] sent = new AtomicLong[this.priorities.length], dropped = new AtomicLong[this.priorities.length],
+            totalWait = new AtomicLong[this.priorities.length], maxWait = new AtomicLong[this.priorities.length];
+    private final AtomicLong coalesced = new AtomicLong();
+    private final double rate;
+    private double tokens;
+    private long lastRefill = System.nanoTime(), sequence;
+
+    public MessageScheduler(JsonObject config) {
+        // below the global limit of 50 requests per second, JDA also needs some for other requests
+        this.rate = config.has("globalRate") ? config.get("globalRate").getAsDouble() : 40;
+        this.tokens = this.rate;
+        JsonObject capacities = config.has("capacity") ? config.get("capacity").getAsJsonObject() : new JsonObject();
+        for (MessagePriority priority : this.priorities) {
+            int index = priority.ordinal();
+            this.capacities[index] = capacities.has(priority.getKey()) ? capacities.get(priority.getKey()).getAsInt() : priority.getDefaultCapacity();
+            this.sent[index] = new AtomicLong();
+            this.dropped[index] = new AtomicLong();
+            this.totalWait[index] = new AtomicLong();
+            this.maxWait[index] = new AtomicLong();
+        }
+
+        Thread thread = new Thread(this::dispatch);
+        thread.setDaemon(true);
+        thread.setName("Message Scheduler");
+        thread.start();
+    }
+
+    public <T> CompletableFuture<T> queue(MessagePriority priority, long route, RestAction<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.add(route, new Entry(priority, action, null, null, future));
+        return future;
+    }
+
+    // the embed may be sent together with other embeds of the same priority in the same channel
+    public CompletableFuture<Object> queueEmbed(MessagePriority priority, TextChannel channel, MessageEmbed embed) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        this.add(channel.getIdLong(), new Entry(priority, null, channel, embed, future));
+        return future;
+    }
+
+    private void add(long id, Entry entry) {
+        int index = entry.priority.ordinal();
+        synchronized (this.lock) {
+            if (this.queued[index] >= this.capacities[index]) {
+                this.dropped[index].incrementAndGet();
+                entry.future.completeExceptionally(new RejectedExecutionException("The " + entry.priority.getKey() + " queue is full"));
+                return;
+            }
+            this.queued[index]++;
+            entry.sequence = this.sequence++;
+
+            Route route = this.routes.computeIfAbsent(id, Route::new);
+            if (route.ready) { // the position depends on the first entry, which could change
+                this.ready.remove(route);
+                route.ready = false;
+            }
+            route.entries[index].add(entry);
+            if (!route.running) {
+                this.markReady(route);
+            }
+            this.lock.notify();
+        }
+    }
+
+    private void markReady(Route route) {
+        Entry head = route.peek();
+        route.priority = head.priority.ordinal();
+        route.sequence = head.sequence;
+        route.ready = true;
+        this.ready.add(route);
+    }
+
+    private void dispatch() {
+        while (true) {
+            Route route;
+            List<Entry> batch;
+            try {
+                synchronized (this.lock) {
+                    while (this.ready.isEmpty()) {
+                        this.lock.wait();
+                    }
+                    long delay = this.takeToken();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this.lock, delay);
+                        continue;
+                    }
+                    route = this.ready.pollFirst();
+                    route.ready = false;
+                    route.running = true;
+                    batch = route.poll();
+                    this.queued[batch.get(0).priority.ordinal()] -= batch.size();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            this.send(route, batch);
+        }
+    }
+
+    private long takeToken() {
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.rate, this.tokens+(now-this.lastRefill)*this.rate/TimeUnit.SECONDS.toNanos(1));
+        this.lastRefill = now;
+        if (this.tokens >= 1) {
+            this.tokens--;
+            return 0;
+        }
+        return (long) ((1-this.tokens)*TimeUnit.SECONDS.toNanos(1)/this.rate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void send(Route route, List<Entry> batch) {
+        Entry first = batch.get(0);
+        int index = first.priority.ordinal();
+        long now = System.nanoTime();
+        for (Entry entry : batch) {
+            long wait = TimeUnit.NANOSECONDS.toMillis(now-entry.queued);
+            this.totalWait[index].addAndGet(wait);
+            this.maxWait[index].accumulateAndGet(wait, Math::max);
+        }
+        this.sent[index].addAndGet(batch.size());
+
+        try {
+            RestAction<Object> action;
+            if (first.embed == null) {
+                action = (RestAction<Object>) first.action;
+            } else {
+                List<MessageEmbed> embeds = new ArrayList<>();
+                for (Entry entry : batch) {
+                    embeds.add(entry.embed);
+                }
+                this.coalesced.addAndGet(batch.size()-1);
+                action = (RestAction<Object>) (RestAction<?>) first.channel.sendMessageEmbeds(embeds);
+            }
+            action.queue(result -> {
+                batch.forEach(entry -> ((CompletableFuture<Object>) entry.future).complete(result));
+                this.finish(route);
+            }, throwable -> {
+                RestAction.getDefaultFailure().accept(throwable); // logged like a failed queue() without a failure callback
+                batch.forEach(entry -> entry.future.completeExceptionally(throwable));
+                this.finish(route);
+            });
+        } catch (RuntimeException e) { // e.g. missing permissions are checked before the request is queued
+            batch.forEach(entry -> entry.future.completeExceptionally(e));
+            this.finish(route);
+        }
+    }
+
+    private void finish(Route route) {
+        synchronized (this.lock) {
+            route.running = false;
+            if (route.isEmpty()) {
+                this.routes.remove(route.id);
+            } else {
+                this.markReady(route);
+                this.lock.notify();
+            }
+        }
+    }
+
+    public JsonObject getStatsObject() {
+        JsonObject jsonObject = new JsonObject();
+        synchronized (this.lock) {
+            jsonObject.addProperty("routes", this.routes.size());
+        }
+        jsonObject.addProperty("globalRate", this.rate);
+        jsonObject.addProperty("coalesced", this.coalesced.get());
+        for (MessagePriority priority : this.priorities) {
+            int index = priority.ordinal();
+            long sent = this.sent[index].get();
+            JsonObject stats = new JsonObject();
+            synchronized (this.lock) {
+                stats.addProperty("queued", this.queued[index]);
+            }
+            stats.addProperty("sent", sent);
+            stats.addProperty("dropped", this.dropped[index].get());
+            stats.addProperty("averageWaitMillis", sent == 0 ? 0 : this.totalWait[index].get()/sent);
+            stats.addProperty("maxWaitMillis", this.maxWait[index].get());
+            jsonObject.add(priority.getKey(), stats);
+        }
+        return jsonObject;
+    }
+
+    private class Route {
+
+        private final long id;
+        private final ArrayDeque<Entry>[] entries;
+        private int priority;
+        private long sequence;
+        private boolean ready, running;
+
+        @SuppressWarnings("unchecked")
+        private Route(long id) {
+            this.id = id;
+            this.entries = new ArrayDeque[MessageScheduler.this.priorities.length];
+            for (int i = 0; i < this.entries.length; i++) {
+                this.entries[i] = new ArrayDeque<>();
+            }
+        }
+
+        private Entry peek() {
+            for (ArrayDeque<Entry> deque : this.entries) {
+                if (!deque.isEmpty()) {
+                    return deque.peek();
+                }
+            }
+            return null;
+        }
+
+        private boolean isEmpty() {
+            return this.peek() == null;
+        }
+
+        // following embeds of the same priority are taken as long as they fit into one message
+        private List<Entry> poll() {
+            ArrayDeque<Entry> deque = this.entries[this.peek().priority.ordinal()];
+            Entry first = deque.poll();
+            List<Entry> batch = new ArrayList<>();
+            batch.add(first);
+            if (first.embed != null) {
+                int length = first.embed.getLength();
+                while (batch.size() < MAX_EMBEDS && deque.peek() != null && deque.peek().embed != null
+                        && length+deque.peek().embed.getLength() <= MAX_EMBED_LENGTH) {
+                    Entry entry = deque.poll();
+                    length += entry.embed.getLength();
+                    batch.add(entry);
+                }
+            }
+            return batch;
+        }
+    }
+
+    private static class Entry {
+
+        private final MessagePriority priority;
+        private final RestAction<?> action;
+        private final TextChannel channel;
+        private final MessageEmbed embed;
+        private final CompletableFuture<?> future;
+        private final long queued = System.nanoTime();
+        private long sequence;
+
+        private Entry(MessagePriority priority, RestAction<?> action, TextChannel channel, MessageEmbed embed, CompletableFuture<?> future) {
+            this.priority = priority;
+            this.action = action;
+            this.channel = channel;
+            this.embed = embed;
+            this.future = future;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package de.nickkel.lupobot.core.pagination;
 
+import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.command.CommandContext;
 import de.nickkel.lupobot.core.data.LupoServer;
+import de.nickkel.lupobot.core.message.MessagePriority;
 import lombok.Getter;
 import net.dv8tion.jda.api.entities.Emoji;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.Button;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.interactions.ReplyAction;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class Paginator {
@@ -28,25 +34,12 @@ public class Paginator {
         Button next = Button.secondary(PREFIX + ";NEXT;" + pages.getIdentifier(), server.translate(null, "core_pagination-next")).withEmoji(Emoji.fromMarkdown("▶"));
         Paginator.relatedPages.put(pages.getIdentifier(), pages);
 
-        if (timeout == 0) {
-            if (context.getSlash() == null) {
-                context.getChannel().sendMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next).queue();
-            } else {
-                context.getSlash().replyEmbeds(pages.getPages().get(0).getEmbed()).addActionRow(last, next).setEphemeral(context.isEphemeral()).queue();
-            }
-            return;
-        }
-
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next)
-                    .delay(timeout, TimeUnit.SECONDS)
-                    .flatMap((it) -> it.editMessage(it).setActionRow(last.asDisabled(), next.asDisabled()))
-                    .queue();
+            send(context.getChannel().getIdLong(), context.getChannel().sendMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next), timeout,
+                    (it) -> it.editMessage(it).setActionRow(last.asDisabled(), next.asDisabled()));
         } else {
-            context.getSlash().replyEmbeds(pages.getPages().get(0).getEmbed()).addActionRow(last, next).setEphemeral(context.isEphemeral())
-                    .delay(timeout, TimeUnit.SECONDS)
-                    .flatMap((it) -> it.editOriginalComponents(ActionRow.of(last.asDisabled(), next.asDisabled())))
-                    .queue();
+            send(context.getChannel().getIdLong(), context.getSlash().replyEmbeds(pages.getPages().get(0).getEmbed()).addActionRow(last, next).setEphemeral(context.isEphemeral()), timeout,
+                    (it) -> it.editOriginalComponents(ActionRow.of(last.asDisabled(), next.asDisabled())));
         }
     }
 
@@ -57,15 +50,8 @@ public class Paginator {
         Button next = Button.secondary(PREFIX + ";NEXT;" + pages.getIdentifier(), server.translate(null, "core_pagination-next")).withEmoji(Emoji.fromMarkdown("▶"));
         Paginator.relatedPages.put(pages.getIdentifier(), pages);
 
-        if (timeout == 0) {
-            channel.sendMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next).queue();
-            return;
-        }
-
-        channel.sendMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next)
-                .delay(timeout, TimeUnit.SECONDS)
-                .flatMap((it) -> it.editMessage(it).setActionRow(last.asDisabled(), next.asDisabled()))
-                .queue();
+        send(channel.getIdLong(), channel.sendMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next), timeout,
+                (it) -> it.editMessage(it).setActionRow(last.asDisabled(), next.asDisabled()));
     }
 
     public static void paginate(Message message, List<Page> pageList, long timeout) {
@@ -75,15 +61,8 @@ public class Paginator {
         Button next = Button.secondary(PREFIX + ";NEXT;" + pages.getIdentifier(), server.translate(null, "core_pagination-next")).withEmoji(Emoji.fromMarkdown("▶"));
         Paginator.relatedPages.put(pages.getIdentifier(), pages);
 
-        if (timeout == 0) {
-            message.editMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next).queue();
-            return;
-        }
-
-        message.editMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next)
-                .delay(timeout, TimeUnit.SECONDS)
-                .flatMap((it) -> it.editMessage(it).setActionRow(last.asDisabled(), next.asDisabled()))
-                .queue();
+        send(message.getChannel().getIdLong(), message.editMessage(pages.getPages().get(0).getEmbed()).setActionRow(last, next), timeout,
+                (it) -> it.editMessage(it).setActionRow(last.asDisabled(), next.asDisabled()));
     }
 
     public static void categorize(CommandContext context, List<Page> pages, long timeout) {
@@ -93,26 +72,13 @@ public class Paginator {
             buttons.add(page.getButton());
         }
 
-        if (timeout == 0) {
-            if (context.getSlash() == null) {
-                context.getChannel().sendMessage(pages.get(0).getEmbed()).setActionRow(buttons).queue();
-            } else {
-                context.getSlash().replyEmbeds(pages.get(0).getEmbed()).addActionRows(ActionRow.of(buttons)).setEphemeral(context.isEphemeral()).queue();
-            }
-            return;
-        }
-
         List<Button> disabledButtons = buttons.stream().map(Button::asDisabled).collect(Collectors.toList());
         if (context.getSlash() == null) {
-            context.getChannel().sendMessage(pages.get(0).getEmbed()).setActionRow(buttons)
-                    .delay(timeout, TimeUnit.SECONDS)
-                    .flatMap((it) -> it.editMessage(it).setActionRow(disabledButtons))
-                    .queue();
+            send(context.getChannel().getIdLong(), context.getChannel().sendMessage(pages.get(0).getEmbed()).setActionRow(buttons), timeout,
+                    (it) -> it.editMessage(it).setActionRow(disabledButtons));
         } else {
-            context.getSlash().replyEmbeds(pages.get(0).getEmbed()).addActionRows(ActionRow.of(buttons)).setEphemeral(context.isEphemeral())
-                    .delay(timeout, TimeUnit.SECONDS)
-                    .flatMap((it) -> it.editOriginalComponents(ActionRow.of(disabledButtons)))
-                    .queue();
+            send(context.getChannel().getIdLong(), context.getSlash().replyEmbeds(pages.get(0).getEmbed()).addActionRows(ActionRow.of(buttons)).setEphemeral(context.isEphemeral()), timeout,
+                    (it) -> it.editOriginalComponents(ActionRow.of(disabledButtons)));
         }
     }
 
@@ -123,16 +89,9 @@ public class Paginator {
             buttons.add(page.getButton());
         }
 
-        if (timeout == 0) {
-            message.editMessage(message).setActionRow(buttons).queue();
-            return;
-        }
-
         List<Button> disabledButtons = buttons.stream().map(Button::asDisabled).collect(Collectors.toList());
-        message.editMessage(message).setActionRow(buttons)
-                .delay(timeout, TimeUnit.SECONDS)
-                .flatMap((it) -> it.editMessage(it).setActionRow(disabledButtons))
-                .queue();
+        send(message.getChannel().getIdLong(), message.editMessage(message).setActionRow(buttons), timeout,
+                (it) -> it.editMessage(it).setActionRow(disabledButtons));
     }
 
     public static void categorize(TextChannel channel, List<Page> pages, long timeout) {
@@ -142,15 +101,18 @@ public class Paginator {
             buttons.add(page.getButton());
         }
 
-        if (timeout == 0) {
-            channel.sendMessage(pages.get(0).getEmbed()).setActionRow(buttons).queue();
-            return;
-        }
-
         List<Button> disabledButtons = buttons.stream().map(Button::asDisabled).collect(Collectors.toList());
-        channel.sendMessage(pages.get(0).getEmbed()).setActionRow(buttons)
-                .delay(timeout, TimeUnit.SECONDS)
-                .flatMap((it) -> it.editMessage(it).setActionRow(disabledButtons))
-                .queue();
+        send(channel.getIdLong(), channel.sendMessage(pages.get(0).getEmbed()).setActionRow(buttons), timeout,
+                (it) -> it.editMessage(it).setActionRow(disabledButtons));
+    }
+
+    // the buttons are disabled after the timeout, a timeout of 0 keeps them enabled
+    private static <T> void send(long route, RestAction<T> action, long timeout, Function<T, RestAction<?>> disable) {
+        // replies to slash commands are not queued, see LupoCommand
+        CompletableFuture<T> future = action instanceof ReplyAction ? action.submit()
+                : LupoBot.getInstance().getMessageScheduler().queue(MessagePriority.COMMAND, route, action);
+        if (timeout != 0) {
+            future.thenAccept(result -> disable.apply(result).queueAfter(timeout, TimeUnit.SECONDS));
+        }
     }
 }
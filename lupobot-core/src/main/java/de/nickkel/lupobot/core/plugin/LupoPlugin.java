@@ -3,6 +3,7 @@ package de.nickkel.lupobot.core.plugin;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.command.LupoCommand;
 import de.nickkel.lupobot.core.config.Document;
+import de.nickkel.lupobot.core.data.EntityData;
 import de.nickkel.lupobot.core.language.LanguageHandler;
 import de.nickkel.lupobot.core.util.FileResourcesUtils;
 import de.nickkel.lupobot.core.util.ListenerRegister;
@@ -46,6 +47,10 @@ import java.util.List;
         new ListenerRegister(this, packageName);
     }
 
+    public void registerData(Class<? extends EntityData> type) {
+        LupoBot.getInstance().getEntityDataRegistry().register(this, type);
+    }
+
     public void loadResources() {
         try {
             this.userConfig = new Document(new FileResourcesUtils(this.resourcesClass).getFileFromResourceAsStream("user.json"));
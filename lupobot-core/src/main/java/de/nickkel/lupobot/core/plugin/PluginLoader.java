@@ -1,7 +1,6 @@
 package de.nickkel.lupobot.core.plugin;
 
 import de.nickkel.lupobot.core.LupoBot;
-import de.nickkel.lupobot.core.command.LupoCommand;
 import de.nickkel.lupobot.core.language.LanguageHandler;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 
@@ -62,7 +61,8 @@ public class PluginLoader {
             plugin.setLanguageHandler(new LanguageHandler(resourcesClass));
             plugin.setResourcesClass(resourcesClass);
             plugin.loadResources();
-            LupoBot.getInstance().getPlugins().add(plugin);
+            LupoBot.getInstance().addPlugin(plugin);
+            LupoBot.getInstance().compileTemplates();
             LupoBot.getInstance().getLogger().info("Loaded plugin " + plugin.getInfo().name() + " version " + plugin.getResourcesClass().getPackage().getImplementationVersion() + " by " + plugin.getInfo().author());
 
             if (!plugin.isEnabled()) {
@@ -85,14 +85,15 @@ public class PluginLoader {
                 LupoBot.getInstance().getShardManager().removeEventListener(listener);
             }
 
-            Iterator<LupoCommand> commands = plugin.getCommands().iterator();
-            while (commands.hasNext()) {
-                LupoBot.getInstance().getCommandHandler().unregisterCommand(commands.next());
-            }
+            LupoBot.getInstance().getCommandHandler().unregisterCommands(plugin.getCommands());
             plugin.onDisable();
         }
+        LupoBot.getInstance().getServers().values().forEach(server -> server.releaseData(plugin));
+        LupoBot.getInstance().getUsers().values().forEach(user -> user.releaseData(plugin));
+        LupoBot.getInstance().getEntityDataRegistry().unregister(plugin);
         LupoBot.getInstance().getLogger().info("Unloaded plugin " + plugin.getInfo().name() + " version " + plugin.getResourcesClass().getPackage().getImplementationVersion());
-        LupoBot.getInstance().getPlugins().remove(plugin);
+        LupoBot.getInstance().removePlugin(plugin);
+        LupoBot.getInstance().compileTemplates();
     }
 
     public void reloadPlugin(LupoPlugin plugin) {
@@ -63,6 +63,7 @@ public class OAuth2 {
 
                 LupoUser lupoUser = LupoUser.getById(user.getIdLong());
                 lupoUser.getData().append("cookiesToken", code);
+                lupoUser.markDirty("cookiesToken");
                 if (lupoUser.getStaffGroup().getRole() != null) {
                     document.append("staffGroup", lupoUser.getStaffGroup().getRole().getName());
                 }
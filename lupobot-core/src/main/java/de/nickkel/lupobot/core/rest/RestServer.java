@@ -52,6 +52,7 @@ public class RestServer {
         new BotController(this.app);
         new OAuth2Controller(this.app);
         new CommandController(this.app);
+        new ErrorController(this.app);
 
         this.started = true;
     }
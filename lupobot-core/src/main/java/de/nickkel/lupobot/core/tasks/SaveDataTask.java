@@ -1,38 +1,200 @@
 package de.nickkel.lupobot.core.tasks;
 
+import com.google.gson.JsonObject;
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoServer;
 import de.nickkel.lupobot.core.data.LupoUser;
+import org.bson.BasicBSONEncoder;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TimerTask;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class SaveDataTask extends TimerTask {
+
+    private final int batchSize, retries;
+    private final ExecutorService saveService;
+    private int threadNumber = 0;
+
+    public SaveDataTask() {
+        JsonObject database = LupoBot.getInstance().getConfig().getJsonElement("database").getAsJsonObject();
+        this.batchSize = database.has("saveBatchSize") ? database.get("saveBatchSize").getAsInt() : 500;
+        this.retries = database.has("saveRetries") ? database.get("saveRetries").getAsInt() : 3;
+        int threads = database.has("saveThreads") ? database.get("saveThreads").getAsInt() : 2;
+        this.saveService = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("Save Thread #" + this.threadNumber++);
+            return thread;
+        });
+    }
+
     @Override
     public void run() {
-        List<LupoServer> servers = new ArrayList<>(LupoBot.getInstance().getSaveQueuedServers());
-        List<LupoUser> users = new ArrayList<>(LupoBot.getInstance().getSaveQueuedUsers());
-        LupoBot.getInstance().getSaveQueuedServers().clear();
-        LupoBot.getInstance().getSaveQueuedUsers().clear();
-        int serverAmount = 0;
-        LupoBot.getInstance().getLogger().info("Trying to save data of queued servers ...");
-        for (LupoServer server : servers) {
-            serverAmount++;
-            server.saveData();
-        }
-        LupoBot.getInstance().getLogger().info("Saved data of " + serverAmount + " servers!");
-
-        int userAmount = 0;
-        LupoBot.getInstance().getLogger().info("Trying to save data of queued users ...");
-        for (LupoUser user : users) {
-            userAmount++;
-            user.saveData();
-        }
-        LupoBot.getInstance().getLogger().info("Saved data of " + userAmount + " users!");
-
-        LupoBot.getInstance().getLogger().info("Trying to save bot data ...");
-        LupoBot.getInstance().saveData();
-        LupoBot.getInstance().getLogger().info("Saved bot data!");
+        // an exception must not reach the timer, it would cancel every following save
+        try {
+            this.save();
+        } catch (Throwable throwable) {
+            LupoBot.getInstance().getLogger().error("Could not save data:", throwable);
+        }
+    }
+
+    private void save() {
+        // idle entities are only expired on cache activity, force it so they get written back
+        LupoBot.getInstance().getServers().cleanUp();
+        LupoBot.getInstance().getUsers().cleanUp();
+        LupoBot.getInstance().getServers().getLoader().retryWriteBacks();
+        LupoBot.getInstance().getUsers().getLoader().retryWriteBacks();
+
+        long start = System.currentTimeMillis();
+        // everything journaled up to here is part of this save, the segments can be deleted if it succeeds
+        long segment = LupoBot.getInstance().getJournal().rotate();
+        List<LupoServer> servers = this.drain(LupoBot.getInstance().getSaveQueuedServers());
+        List<LupoUser> users = this.drain(LupoBot.getInstance().getSaveQueuedUsers());
+        LupoBot.getInstance().getLogger().info("Trying to save data of " + servers.size() + " queued servers and " + users.size() + " queued users ...");
+
+        List<Batch> batches = new ArrayList<>();
+        try {
+            this.flush("servers", servers, server -> server.getGuild().getIdLong(), LupoServer::drainUpdate, LupoServer::restoreUpdate, batches);
+            this.flush("users", users, LupoUser::getId, LupoUser::drainUpdate, LupoUser::restoreUpdate, batches);
+
+            // changes drained after the last group commit have to be journaled before they reach the database
+            LupoBot.getInstance().getJournal().commit();
+        } catch (RuntimeException e) {
+            // nothing is sent yet, everything drained is queued again for the next save
+            batches.forEach(batch -> batch.restores.forEach(Runnable::run));
+            servers.forEach(LupoServer::saveQueue);
+            users.forEach(LupoUser::saveQueue);
+            throw e;
+        }
+        List<CompletableFuture<Batch>> futures = new ArrayList<>();
+        for (Batch batch : batches) {
+            futures.add(this.submit(batch));
+        }
+
+        long entities = 0, bytes = 0, failures = 0;
+        for (CompletableFuture<Batch> future : futures) {
+            Batch batch = future.join();
+            entities += batch.models.size()-batch.failures;
+            bytes += batch.bytes;
+            failures += batch.failures;
+        }
+
+        try {
+            LupoBot.getInstance().saveData().join();
+        } catch (CompletionException e) {
+            failures++;
+            LupoBot.getInstance().getLogger().error("Could not save bot data:", e.getCause());
+        }
+
+        // a failed write back only exists in memory and in the journal until it is retried
+        if (failures == 0 && !LupoBot.getInstance().getServers().getLoader().hasPendingWriteBacks()
+                && !LupoBot.getInstance().getUsers().getLoader().hasPendingWriteBacks()) {
+            LupoBot.getInstance().getJournal().truncate(segment);
+        }
+        LupoBot.getInstance().getCommandHandler().getCooldownService().save();
+
+        long duration = System.currentTimeMillis()-start;
+        LupoBot.getInstance().getSaveStatistics().recordFlush(entities, bytes, failures, duration);
+        LupoBot.getInstance().getLogger().info("Saved data of " + entities + " entities (" + bytes + " bytes) in " + futures.size() + " batches within "
+                + duration + "ms" + (failures != 0 ? ", " + failures + " failed and will be retried with the next save" : "") + "!");
+    }
+
+    // entities changed while draining are either drained with their change or queued again by markDirty
+    private <T> List<T> drain(Set<T> queue) {
+        List<T> drained = new ArrayList<>();
+        Iterator<T> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    // every drained update is in a batch right away, so it can be restored if a later one fails
+    private <T> void flush(String collection, List<T> entities, ToLongFunction<T> id,
+                           Function<T, BasicDBObject> drain, BiConsumer<T, BasicDBObject> restore, List<Batch> batches) {
+        BasicBSONEncoder encoder = new BasicBSONEncoder();
+
+        Batch batch = null;
+        for (T entity : entities) {
+            BasicDBObject update = drain.apply(entity);
+            if (update.isEmpty()) {
+                continue;
+            }
+
+            if (batch == null || batch.models.size() == this.batchSize) {
+                batch = new Batch(collection);
+                batches.add(batch);
+            }
+            batch.models.add(new UpdateOneModel<>(new BasicDBObject("_id", id.applyAsLong(entity)), update));
+            batch.restores.add(() -> restore.accept(entity, update));
+            int size = encoder.encode(update).length;
+            batch.sizes.add(size);
+            batch.bytes += size;
+        }
+    }
+
+    private CompletableFuture<Batch> submit(Batch batch) {
+        String collection = batch.collection;
+        return CompletableFuture.supplyAsync(() -> {
+            for (int attempt = 1; ; attempt++) {
+                Throwable cause;
+                try {
+                    LupoBot.getInstance().getDataStore().bulkWrite(collection, batch.models, new BulkWriteOptions().ordered(false)).join();
+                    return batch;
+                } catch (RuntimeException e) {
+                    cause = e instanceof CompletionException ? e.getCause() : e;
+                }
+
+                if (cause instanceof MongoBulkWriteException) {
+                    // rejected writes won't succeed on a retry, keep them dirty for the next save
+                    for (BulkWriteError error : ((MongoBulkWriteException) cause).getWriteErrors()) {
+                        batch.restores.get(error.getIndex()).run();
+                        batch.bytes -= batch.sizes.get(error.getIndex());
+                        batch.failures++;
+                    }
+                    LupoBot.getInstance().getLogger().warn(batch.failures + " writes to " + collection + " were rejected: " + cause.getMessage());
+                    return batch;
+                }
+                if (attempt > this.retries || !(cause instanceof MongoException)) {
+                    batch.restores.forEach(Runnable::run);
+                    batch.bytes = 0;
+                    batch.failures = batch.models.size();
+                    LupoBot.getInstance().getLogger().error("Could not save batch of " + batch.models.size() + " entities to " + collection + ":", cause);
+                    return batch;
+                }
+                LupoBot.getInstance().getSaveStatistics().recordRetry();
+                try {
+                    Thread.sleep(attempt*1000L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, this.saveService);
+    }
+
+    private static class Batch {
+        private final String collection;
+        private final List<UpdateOneModel<BasicDBObject>> models = new ArrayList<>();
+        private final List<Runnable> restores = new ArrayList<>();
+        private final List<Integer> sizes = new ArrayList<>();
+        private long bytes;
+        private int failures;
+
+        private Batch(String collection) {
+            this.collection = collection;
+        }
     }
 }
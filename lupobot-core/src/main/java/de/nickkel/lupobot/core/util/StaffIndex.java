@@ -0,0 +1,134 @@
+package de.nickkel.lupobot.core.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.events.role.update.RoleUpdatePositionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// staff groups of the members of the hub, kept up to date by the role events of the hub instead of requesting the member
+public class StaffIndex extends ListenerAdapter {
+
+    private final long hubId;
+    private final Map<Long, Long> powers;
+    private final Map<Long, StaffGroup> groups = new ConcurrentHashMap<>();
+    // members changed by events during each running reload, the reload must neither drop nor add them again
+    private final Set<Set<Long>> reloads = ConcurrentHashMap.newKeySet();
+
+    public StaffIndex(long hubId, JsonObject staffGroups) {
+        this.hubId = hubId;
+        Map<Long, Long> powers = new HashMap<>();
+        for (Map.Entry<String, JsonElement> entry : staffGroups.entrySet()) {
+            powers.put(Long.parseLong(entry.getKey()), entry.getValue().getAsLong());
+        }
+        this.powers = Collections.unmodifiableMap(powers);
+    }
+
+    // users who are not staff on the hub get a group without a role
+    public StaffGroup get(long userId) {
+        StaffGroup group = this.groups.get(userId);
+        return group != null ? group : StaffGroup.NONE;
+    }
+
+    public int size() {
+        return this.groups.size();
+    }
+
+    public void load(Guild hub) {
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        this.reloads.add(changed);
+        hub.findMembers(member -> !member.getRoles().isEmpty() && this.powers.containsKey(member.getRoles().get(0).getIdLong())).onSuccess(members -> {
+            Set<Long> ids = new HashSet<>();
+            for (Member member : members) {
+                ids.add(member.getIdLong());
+                if (!changed.contains(member.getIdLong())) { // an event during the reload is newer than the result
+                    this.update(member);
+                }
+            }
+            // not cleared first, lookups in the meantime still find the staff
+            this.groups.keySet().removeIf(id -> !ids.contains(id) && !changed.contains(id));
+            this.reloads.remove(changed);
+        }).onError(throwable -> this.reloads.remove(changed));
+    }
+
+    private void changed(long userId) {
+        for (Set<Long> changed : this.reloads) {
+            changed.add(userId);
+        }
+    }
+
+    // the staff group is the highest role of a member, if it is configured in the staffGroups
+    private void update(Member member) {
+        Role role = member.getRoles().isEmpty() ? null : member.getRoles().get(0);
+        if (role != null && this.powers.containsKey(role.getIdLong())) {
+            this.groups.put(member.getIdLong(), new StaffGroup(role, this.powers.get(role.getIdLong())));
+        } else {
+            this.groups.remove(member.getIdLong());
+        }
+    }
+
+    private boolean isHub(Guild guild) {
+        return guild.getIdLong() == this.hubId;
+    }
+
+    @Override
+    public void onGuildReady(@NotNull GuildReadyEvent event) {
+        if (this.isHub(event.getGuild())) {
+            this.load(event.getGuild());
+        }
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(@NotNull GuildMemberRoleAddEvent event) {
+        if (this.isHub(event.getGuild())) {
+            this.changed(event.getMember().getIdLong());
+            this.update(event.getMember());
+        }
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(@NotNull GuildMemberRoleRemoveEvent event) {
+        if (this.isHub(event.getGuild())) {
+            this.changed(event.getMember().getIdLong());
+            this.update(event.getMember());
+        }
+    }
+
+    @Override
+    public void onGuildMemberRemove(@NotNull GuildMemberRemoveEvent event) {
+        if (this.isHub(event.getGuild())) {
+            this.changed(event.getUser().getIdLong());
+            this.groups.remove(event.getUser().getIdLong());
+        }
+    }
+
+    // changes which role is the highest one for many members at once
+    @Override
+    public void onRoleUpdatePosition(@NotNull RoleUpdatePositionEvent event) {
+        if (this.isHub(event.getGuild())) {
+            this.load(event.getGuild());
+        }
+    }
+
+    @Override
+    public void onRoleDelete(@NotNull RoleDeleteEvent event) {
+        if (this.isHub(event.getGuild())) {
+            this.load(event.getGuild());
+        }
+    }
+}
@@ -2,7 +2,6 @@ package de.nickkel.lupobot.plugin.currency;
 
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
-import com.mongodb.util.JSON;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.config.Document;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
@@ -65,7 +64,7 @@ public class LupoCurrencyPlugin extends LupoPlugin {
     }
 
     public void loadItems() {
-        BasicDBObject dbObject = (BasicDBObject) JSON.parse(this.itemConfig.convertToJsonString());
+        BasicDBObject dbObject = BasicDBObject.parse(this.itemConfig.convertToJsonString());
         for (String name : dbObject.keySet()) {
             BasicDBList dbList = new BasicDBList();
             dbList.addAll(this.itemConfig.getList(name));
@@ -76,7 +75,7 @@ public class LupoCurrencyPlugin extends LupoPlugin {
     }
 
     public void loadJobs() {
-        BasicDBObject dbObject = (BasicDBObject) JSON.parse(this.jobConfig.convertToJsonString());
+        BasicDBObject dbObject = BasicDBObject.parse(this.jobConfig.convertToJsonString());
         for (String name : dbObject.keySet()) {
             BasicDBList dbList = new BasicDBList();
             dbList.addAll(this.jobConfig.getList(name));
@@ -33,7 +33,7 @@ public class DailyRemindCommand extends LupoCommand {
             builder.setDescription(context.getServer().translate(context.getPlugin(), "currency_dailyremind-added"));
         }
         pluginObject.append("dailyReminds", dbList);
-        LupoBot.getInstance().getData().append(LupoCurrencyPlugin.getInstance().getInfo().name(), pluginObject);
+        LupoBot.getInstance().markDirty(LupoCurrencyPlugin.getInstance(), "dailyReminds");
         send(context, builder);
     }
 
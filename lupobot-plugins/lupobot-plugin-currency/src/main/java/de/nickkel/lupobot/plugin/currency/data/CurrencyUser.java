@@ -15,8 +15,7 @@ import java.util.*;
 
 public class CurrencyUser {
 
-    @Getter
-    private final LupoUser user;
+    private final User discordUser;
     @Getter
     private final LupoPlugin plugin;
     @Getter @Setter
@@ -24,28 +23,32 @@ public class CurrencyUser {
 
     public CurrencyUser(Member member) {
         this.plugin = LupoBot.getInstance().getPlugin("currency");
-        this.user = LupoUser.getByMember(member);
+        this.discordUser = member.getUser();
+    }
+
+    public LupoUser getUser() {
+        return LupoUser.getByDiscordUser(this.discordUser);
     }
 
     public long getCoins() {
-        return this.user.getPluginLong(this.plugin, "coins");
+        return this.getUser().getPluginLong(this.plugin, "coins");
     }
 
     public void addCoins(long amount) {
-        this.user.appendPluginData(this.plugin, "coins", this.user.getPluginLong(this.plugin, "coins")+amount);
+        this.getUser().appendPluginData(this.plugin, "coins", this.getUser().getPluginLong(this.plugin, "coins")+amount);
     }
 
     public void addItem(Item item, long amount) {
-        BasicDBObject pluginObject = (BasicDBObject) this.user.getData().get(LupoCurrencyPlugin.getInstance().getInfo().name());
+        BasicDBObject pluginObject = (BasicDBObject) this.getUser().getData().get(LupoCurrencyPlugin.getInstance().getInfo().name());
         BasicDBObject itemObject = (BasicDBObject) pluginObject.get("inventory");
 
         itemObject.append(item.getName(), getItem(item)+amount);
         pluginObject.append("inventory", itemObject);
-        this.user.getData().append(LupoCurrencyPlugin.getInstance().getInfo().name(), pluginObject);
+        this.getUser().markDirty(LupoCurrencyPlugin.getInstance(), "inventory." + item.getName());
     }
 
     public Long getItem(Item item) {
-        BasicDBObject pluginObject = (BasicDBObject) this.user.getData().get(LupoCurrencyPlugin.getInstance().getInfo().name());
+        BasicDBObject pluginObject = (BasicDBObject) this.getUser().getData().get(LupoCurrencyPlugin.getInstance().getInfo().name());
         BasicDBObject itemObject = (BasicDBObject) pluginObject.get("inventory");
         if (itemObject.containsKey(item.getName())) {
             return itemObject.getLong(item.getName());
@@ -82,11 +85,11 @@ public class CurrencyUser {
     }
 
     public long getInventorySlots() {
-        return this.user.getPluginLong(LupoBot.getInstance().getPlugin(LupoCurrencyPlugin.getInstance().getInfo().name()), "inventorySlots");
+        return this.getUser().getPluginLong(LupoBot.getInstance().getPlugin(LupoCurrencyPlugin.getInstance().getInfo().name()), "inventorySlots");
     }
 
     public void addInventorySlots(long amount) {
-        this.user.appendPluginData(LupoBot.getInstance().getPlugin(LupoCurrencyPlugin.getInstance().getInfo().name()), "inventorySlots", getInventorySlots()+amount);
+        this.getUser().appendPluginData(LupoBot.getInstance().getPlugin(LupoCurrencyPlugin.getInstance().getInfo().name()), "inventorySlots", getInventorySlots()+amount);
     }
 
     public long getUsedInventorySlots() {
@@ -100,10 +103,10 @@ public class CurrencyUser {
     }
 
     public void addStreak() {
-        this.user.appendPluginData(this.plugin, "dailyCoinStreak", this.user.getPluginLong(this.plugin, "dailyCoinStreak")+1);
+        this.getUser().appendPluginData(this.plugin, "dailyCoinStreak", this.getUser().getPluginLong(this.plugin, "dailyCoinStreak")+1);
     }
 
     public void setStreak(long streak) {
-        this.user.appendPluginData(this.plugin, "dailyCoinStreak", streak);
+        this.getUser().appendPluginData(this.plugin, "dailyCoinStreak", streak);
     }
 }
@@ -3,9 +3,11 @@ package de.nickkel.lupobot.plugin.currency.task;
 import com.mongodb.BasicDBList;
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoUser;
+import de.nickkel.lupobot.core.message.MessagePriority;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
 import de.nickkel.lupobot.core.util.TimeUtils;
 import de.nickkel.lupobot.plugin.currency.LupoCurrencyPlugin;
+import net.dv8tion.jda.api.entities.User;
 
 import java.util.TimerTask;
 
@@ -20,10 +22,12 @@ public class DailyRemindTask extends TimerTask {
             String lastDailyRemind = (String) user.getPluginData(plugin, "lastDailyRemind");
             if (lastDailyCoins == -1 || lastDailyCoins+86400000-System.currentTimeMillis() < 0) {
                 if (lastDailyRemind == null || !lastDailyRemind.equals(TimeUtils.currentDate())) {
-                    LupoBot.getInstance().getShardManager().retrieveUserById(user.getId()).complete().openPrivateChannel().queue(success -> {
-                        success.sendMessage("Don't forget to pick up your daily reward! :coin:").queue();
-                    });
-                    user.appendPluginData(plugin, "lastDailyRemind", TimeUtils.currentDate());
+                    // only the send goes through the scheduler, the reminder counts once it was delivered
+                    LupoBot.getInstance().getShardManager().retrieveUserById(user.getId())
+                            .flatMap(User::openPrivateChannel)
+                            .queue(channel -> LupoBot.getInstance().getMessageScheduler().queue(MessagePriority.REMINDER, channel.getIdLong(),
+                                    channel.sendMessage("Don't forget to pick up your daily reward! :coin:"))
+                                    .thenAccept(message -> user.appendPluginData(plugin, "lastDailyRemind", TimeUtils.currentDate())));
                 }
             }
         }
@@ -1,86 +1,72 @@
 package de.nickkel.lupobot.plugin.leveling;
 
-import com.mongodb.BasicDBObject;
 import de.nickkel.lupobot.core.LupoBot;
+import de.nickkel.lupobot.core.data.EntityLoader;
 import de.nickkel.lupobot.core.data.LupoServer;
 import de.nickkel.lupobot.core.data.LupoUser;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
 import de.nickkel.lupobot.core.plugin.PluginInfo;
-import de.nickkel.lupobot.core.util.ListenerRegister;
+import de.nickkel.lupobot.plugin.leveling.data.GuildLevels;
+import de.nickkel.lupobot.plugin.leveling.data.LevelCurve;
+import de.nickkel.lupobot.plugin.leveling.data.LevelingData;
+import de.nickkel.lupobot.plugin.leveling.data.LevelingStore;
 import lombok.Getter;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.TextChannel;
-import net.dv8tion.jda.api.entities.User;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @PluginInfo(name = "leveling", author = "Nickkel")
 public class LupoLevelingPlugin extends LupoPlugin {
 
     @Getter
     public static LupoLevelingPlugin instance;
-    private final Map<Long, Long> lastReceivedXP = new HashMap<>();
+    @Getter
+    private LevelingStore store;
 
     @Override
     public void onEnable() {
         instance = this;
         this.registerCommands("de.nickkel.lupobot.plugin.leveling.commands");
         this.registerListeners("de.nickkel.lupobot.plugin.leveling.listener");
+        this.registerData(LevelingData.class);
+        this.store = new LevelingStore();
+        this.store.createIndex().exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not create index of leveling collection:", throwable);
+            return null;
+        });
     }
 
     @Override
     public void onDisable() {
-
+        this.store.close();
     }
 
     public boolean isReadyToReceiveXP(LupoServer server, LupoUser user) {
-        if (!this.lastReceivedXP.containsKey(server.getGuild().getIdLong()+user.getId())) {
-            return true;
-        }
-        long time = this.lastReceivedXP.get(server.getGuild().getIdLong()+user.getId())-System.currentTimeMillis();
-        return time < 0;
+        return getLevels(server).isReady(user.getId(), System.currentTimeMillis());
     }
 
-    public long getXP(LupoServer server, LupoUser user) {
-        checkIfDataExists(server, user);
-        BasicDBObject pluginObject = (BasicDBObject) server.getData().get(this.getInfo().name());
-        BasicDBObject xpObject = (BasicDBObject) pluginObject.get("xp");
-
-        BasicDBObject data = (BasicDBObject) xpObject.get(String.valueOf(user.getId()));
-        return data.getLong("xp");
+    public LevelingData getData(LupoServer server) {
+        return server.data(LevelingData.class);
     }
 
-    public long getLevel(LupoServer server, LupoUser user) {
-        checkIfDataExists(server, user);
-        BasicDBObject pluginObject = (BasicDBObject) server.getData().get(this.getInfo().name());
-        BasicDBObject xpObject = (BasicDBObject) pluginObject.get("xp");
-
-        BasicDBObject data = (BasicDBObject) xpObject.get(String.valueOf(user.getId()));
-        return data.getLong("level");
+    // blocks until the xp of the guild is loaded, the message listener loads it asynchronously before
+    public GuildLevels getLevels(LupoServer server) {
+        GuildLevels levels = this.store.get(server.getGuild().getIdLong());
+        return levels != null ? levels : EntityLoader.await(this.store.load(server));
     }
 
-    public void addLevel(LupoServer server, LupoUser user) {
-        checkIfDataExists(server, user);
-        long level = getLevel(server, user)+1;
-
-        BasicDBObject pluginObject = (BasicDBObject) server.getData().get(this.getInfo().name());
-        BasicDBObject xpObject = (BasicDBObject) pluginObject.get("xp");
-
-        BasicDBObject data = (BasicDBObject) xpObject.get(String.valueOf(user.getId()));
-        data.append("level", level);
+    public long getXPCooldown(LupoServer server) {
+        return TimeUnit.SECONDS.toMillis(getData(server).getXpCooldown());
+    }
 
-        pluginObject.append("xp", xpObject);
-        server.getData().append(this.getInfo().name(), pluginObject);
-        this.lastReceivedXP.put(server.getGuild().getIdLong()+user.getId(), System.currentTimeMillis()+60000);
+    public long getXP(LupoServer server, LupoUser user) {
+        return getLevels(server).getXp(user.getId());
+    }
 
-        BasicDBObject rewardObject = (BasicDBObject) pluginObject.get("rewardRoles");
-        if (rewardObject.containsKey(String.valueOf(level))) {
-            if (existsRewardRole(server, level)) {
-                server.getGuild().addRoleToMember(user.getId(), server.getGuild().getRoleById(rewardObject.getLong(String.valueOf(level)))).queue();
-            }
-        }
+    public long getLevel(LupoServer server, LupoUser user) {
+        return getLevels(server).getLevel(user.getId());
     }
 
     public void addXP(LupoServer server, LupoUser user, long xp) {
@@ -88,86 +74,81 @@ public class LupoLevelingPlugin extends LupoPlugin {
     }
 
     public void addXP(LupoServer server, LupoUser user, long xp, TextChannel channel) {
-        checkIfDataExists(server, user);
+        this.award(server, user, xp, channel, false);
+    }
+
+    // xp for a message, nothing is added if the member got xp within the cooldown
+    public void addMessageXP(LupoServer server, LupoUser user, TextChannel channel) {
+        this.award(server, user, getRandomXP(), channel, true);
+    }
 
+    private void award(LupoServer server, LupoUser user, long xp, TextChannel channel, boolean checkCooldown) {
         if (user.isBot()) {
             return;
         }
 
-
-        long level = getLevel(server, user);
-        while (getXP(server, user)+xp >= getRequiredXP(getLevel(server, user)+1)) {
-            addLevel(server, user);
-            if (channel != null) {
-                Role role = null;
-                BasicDBObject rewardObject = (BasicDBObject) server.getPluginData(LupoBot.getInstance().getPlugin(this.getInfo().name()), "rewardRoles");
-                if (rewardObject.containsKey(String.valueOf(level))) {
-                    if (existsRewardRole(server, level)) {
-                        role = server.getGuild().getRoleById(rewardObject.getLong(String.valueOf(level)));
-                    }
-                }
-
-                if (server.getPluginData(LupoBot.getInstance().getPlugin(this.getInfo().name()), "levelUpMessage") == null) {
-                    String roleName = "/";
-                    if (role != null) {
-                        roleName = role.getName();
-                    }
-                    channel.sendMessage(server.translate(LupoBot.getInstance().getPlugin(this.getInfo().name()), "leveling_level-up-" + (role != null),
-                            user.getAsMention(), getLevel(server, user), roleName)).queue();
-                } else {
-                    String message = (String) server.getPluginData(LupoBot.getInstance().getPlugin(this.getInfo().name()), "levelUpMessage");
-                    message.replace("%member%", user.getAsMention()).replace("%level%", String.valueOf(getLevel(server, user)));
-                    if (role != null) {
-                        message = message.replace("%role%", role.getName());
-                    } else {
-                        message = message.replace("%role%", "/");
-                    }
-                    channel.sendMessage(message).queue();
-                }
+        GuildLevels levels = getLevels(server);
+        long reached = this.store.award(levels, user.getId(), xp, System.currentTimeMillis(), getXPCooldown(server), checkCooldown);
+        if (reached == GuildLevels.RETIRED) { // expired while it was used, added again once it is reloaded
+            this.store.load(server).thenRun(() -> this.award(server, user, xp, channel, checkCooldown)).exceptionally(throwable -> {
+                LupoBot.getInstance().getLogger().error("Could not add xp to user " + user.getId() + ":", throwable);
+                return null;
+            });
+            return;
+        }
+        if (reached > 0) {
+            long level = levels.getLevel(user.getId());
+            for (long i = level-reached+1; i <= level; i++) {
+                this.levelUp(server, user, i, channel);
             }
         }
-
-        BasicDBObject pluginObject = (BasicDBObject) server.getData().get(this.getInfo().name());
-        BasicDBObject xpObject = (BasicDBObject) pluginObject.get("xp");
-
-        BasicDBObject data = (BasicDBObject) xpObject.get(String.valueOf(user.getId()));
-        data.append("xp", getXP(server, user)+xp);
-
-        pluginObject.append("xp", xpObject);
-        server.getData().append(this.getInfo().name(), pluginObject);
-        this.lastReceivedXP.put(server.getGuild().getIdLong()+user.getId(), System.currentTimeMillis()+60000);
     }
 
-    public boolean existsRewardRole(LupoServer server, long level) {
-        BasicDBObject pluginObject = (BasicDBObject) server.getData().get(LupoLevelingPlugin.getInstance().getInfo().name());
-        BasicDBObject rewardObject = (BasicDBObject) pluginObject.get("rewardRoles");
-        if (rewardObject.containsKey(String.valueOf(level))) {
-            if (server.getGuild().getRoleById(rewardObject.getLong(String.valueOf(level))) == null) {
-                rewardObject.remove(String.valueOf(level));
-                pluginObject.append("rewardRoles", rewardObject);
-                server.getData().append(this.getInfo().name(), pluginObject);
-                return false;
+    private void levelUp(LupoServer server, LupoUser user, long level, TextChannel channel) {
+        LevelingData data = getData(server);
+        Role role = null;
+        if (data.getRewardRoles().containsKey(String.valueOf(level)) && existsRewardRole(server, level)) {
+            role = server.getGuild().getRoleById(data.getRewardRoles().get(String.valueOf(level)));
+            server.getGuild().addRoleToMember(user.getId(), role).queue();
+        }
+        if (channel == null) {
+            return;
+        }
+
+        if (data.getLevelUpMessage() == null) {
+            String roleName = "/";
+            if (role != null) {
+                roleName = role.getName();
+            }
+            channel.sendMessage(server.translate(this, "leveling_level-up-" + (role != null),
+                    user.getAsMention(), level, roleName)).queue();
+        } else {
+            String message = data.getLevelUpMessage().replace("%member%", user.getAsMention()).replace("%level%", String.valueOf(level));
+            if (role != null) {
+                message = message.replace("%role%", role.getName());
+            } else {
+                message = message.replace("%role%", "/");
             }
+            channel.sendMessage(message).queue();
         }
-        return true;
     }
 
-    public void checkIfDataExists(LupoServer server, LupoUser user) {
-        BasicDBObject pluginObject = (BasicDBObject) server.getData().get(this.getInfo().name());
-        BasicDBObject xpObject = (BasicDBObject) pluginObject.get("xp");
-
-        if (!xpObject.containsKey(String.valueOf(user.getId()))) {
-            xpObject.append(String.valueOf(user.getId()), new BasicDBObject().append("level", 0).append("xp", 0));
-            pluginObject.append("xp", xpObject);
-            server.getData().append(this.getInfo().name(), pluginObject);
+    public boolean existsRewardRole(LupoServer server, long level) {
+        LevelingData data = getData(server);
+        Long role = data.getRewardRoles().get(String.valueOf(level));
+        if (role != null && server.getGuild().getRoleById(role) == null) {
+            data.getRewardRoles().remove(String.valueOf(level));
+            data.markDirty("rewardRoles." + level);
+            return false;
         }
+        return true;
     }
 
     public long getRequiredXP(long level) {
-        return Math.round(0.83333333333 * level * (2 * Math.pow(level, 2) + 27 * level + 91));
+        return LevelCurve.getRequiredXP(level);
     }
 
     public long getRandomXP() {
-        return new Random().nextInt((25-15)+1) + 15;
+        return ThreadLocalRandom.current().nextInt(15, 25+1);
     }
 }
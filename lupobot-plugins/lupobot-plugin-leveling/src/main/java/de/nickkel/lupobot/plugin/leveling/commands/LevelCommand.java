@@ -6,6 +6,7 @@ import de.nickkel.lupobot.core.command.LupoCommand;
 import de.nickkel.lupobot.core.command.SlashOption;
 import de.nickkel.lupobot.core.util.LupoColor;
 import de.nickkel.lupobot.plugin.leveling.LupoLevelingPlugin;
+import de.nickkel.lupobot.plugin.leveling.data.GuildLevels;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
@@ -32,8 +33,11 @@ public class LevelCommand extends LupoCommand {
             }
         }
 
-        int percent = (int) (Math.round(LupoLevelingPlugin.getInstance().getXP(context.getServer(), context.getUser()) * 100) /
-                        LupoLevelingPlugin.getInstance().getRequiredXP(LupoLevelingPlugin.getInstance().getLevel(context.getServer(), context.getUser())+1));
+        GuildLevels levels = LupoLevelingPlugin.getInstance().getLevels(context.getServer());
+        long xp = levels.getXp(member.getIdLong()), level = levels.getLevel(member.getIdLong());
+        long requiredXP = LupoLevelingPlugin.getInstance().getRequiredXP(level+1);
+        int rank = levels.getRank(member.getIdLong());
+        int percent = (int) (xp*100/requiredXP);
         EmbedBuilder builder = new EmbedBuilder();
         builder.setTimestamp(context.getTime());
         builder.setColor(LupoColor.BLUE.getColor());
@@ -42,9 +46,11 @@ public class LevelCommand extends LupoCommand {
         builder.setDescription(context.getServer().translate(context.getPlugin(), "leveling_level-progress",
                 "```" + getProgressBar(percent) + "```"));
         builder.addField(context.getServer().translate(context.getPlugin(), "leveling_level-level"),
-                String.valueOf(LupoLevelingPlugin.getInstance().getLevel(context.getServer(), context.getUser())), false);
-        builder.addField(context.getServer().translate(context.getPlugin(), "leveling_level-xp"), context.getServer().formatLong(LupoLevelingPlugin.getInstance().getXP(context.getServer(), context.getUser())) + "/"
-                + context.getServer().formatLong(LupoLevelingPlugin.getInstance().getRequiredXP(LupoLevelingPlugin.getInstance().getLevel(context.getServer(), context.getUser())+1)), false);
+                String.valueOf(level), false);
+        builder.addField(context.getServer().translate(context.getPlugin(), "leveling_level-xp"), context.getServer().formatLong(xp) + "/"
+                + context.getServer().formatLong(requiredXP), false);
+        builder.addField(context.getServer().translate(context.getPlugin(), "leveling_level-rank"),
+                rank != 0 ? "#" + rank + "/" + levels.getRankedSize() : "/", false);
         send(context, builder);
     }
 
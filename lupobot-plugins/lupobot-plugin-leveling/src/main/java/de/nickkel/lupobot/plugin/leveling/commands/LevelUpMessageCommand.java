@@ -5,6 +5,8 @@ import de.nickkel.lupobot.core.command.CommandInfo;
 import de.nickkel.lupobot.core.command.LupoCommand;
 import de.nickkel.lupobot.core.command.SlashOption;
 import de.nickkel.lupobot.core.util.LupoColor;
+import de.nickkel.lupobot.plugin.leveling.LupoLevelingPlugin;
+import de.nickkel.lupobot.plugin.leveling.data.LevelingData;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
@@ -21,7 +23,9 @@ public class LevelUpMessageCommand extends LupoCommand {
             if (context.getSlash() != null) {
                 args = context.getSlash().getOption("message").getAsString();
             }
-            context.getServer().appendPluginData(context.getPlugin(), "levelUpMessage", args);
+            LevelingData data = LupoLevelingPlugin.getInstance().getData(context.getServer());
+            data.setLevelUpMessage(args);
+            data.markDirty("levelUpMessage");
             EmbedBuilder builder = new EmbedBuilder();
             builder.setTimestamp(context.getTime());
             builder.setColor(LupoColor.GREEN.getColor());
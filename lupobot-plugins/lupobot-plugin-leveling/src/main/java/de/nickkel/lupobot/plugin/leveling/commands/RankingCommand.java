@@ -1,61 +1,94 @@
 package de.nickkel.lupobot.plugin.leveling.commands;
 
-import com.mongodb.BasicDBObject;
 import de.nickkel.lupobot.core.command.CommandContext;
 import de.nickkel.lupobot.core.command.CommandInfo;
 import de.nickkel.lupobot.core.command.LupoCommand;
-import de.nickkel.lupobot.core.data.LupoUser;
+import de.nickkel.lupobot.core.command.SlashOption;
+import de.nickkel.lupobot.core.pagination.Page;
+import de.nickkel.lupobot.core.pagination.Paginator;
 import de.nickkel.lupobot.core.util.LupoColor;
+import de.nickkel.lupobot.plugin.leveling.LupoLevelingPlugin;
+import de.nickkel.lupobot.plugin.leveling.data.GuildLevels;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
 @CommandInfo(name = "ranking", aliases = {"ranklist"}, category = "general", cooldown = 20)
+@SlashOption(name = "page", type = OptionType.INTEGER, required = false)
 public class RankingCommand extends LupoCommand {
 
+    // only the pages from the requested one on are built, further ones can be requested with the page argument
+    private static final int PAGE_SIZE = 10, MAX_PAGES = 10;
+
     @Override
     public void onCommand(CommandContext context) {
         Guild guild = context.getGuild();
+        GuildLevels levels = LupoLevelingPlugin.getInstance().getLevels(context.getServer());
+        int size = levels.getRankedSize();
+        int pageCount = Math.max(1, (size+PAGE_SIZE-1)/PAGE_SIZE);
 
-        Map<Long, Long> users = new HashMap<>();
-        BasicDBObject data = (BasicDBObject) context.getServer().getPluginData(context.getPlugin(), "xp");
-
-        for (String id : data.keySet()) {
-            BasicDBObject dbObject = (BasicDBObject) data.get(id);
-            users.put(Long.valueOf(id), dbObject.getLong("xp"));
+        int start = 1;
+        if (context.getArgs().length == 1 || (context.getSlash() != null && context.getSlash().getOption("page") != null)) {
+            try {
+                if (context.getSlash() != null) {
+                    start = (int) context.getSlash().getOption("page").getAsLong();
+                } else {
+                    start = Integer.parseInt(context.getArgs()[0]);
+                }
+            } catch (NumberFormatException e) {
+                start = 0;
+            }
+            if (start < 1 || start > pageCount) {
+                sendSyntaxError(context, "leveling_ranking-invalid-page", pageCount);
+                return;
+            }
         }
 
-        LinkedHashMap<Long, Long> sortedUsers = new LinkedHashMap<>();
-        users.entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                .forEachOrdered(x -> sortedUsers.put(x.getKey(), x.getValue()));
-
-        String userNames = "", xp = "";
-        int rank = 1;
-        for (Long id : sortedUsers.keySet()) {
-            if (rank == 20) {
-                break;
+        int rank = levels.getRank(context.getMember().getIdLong());
+        List<MessageEmbed> embeds = new ArrayList<>();
+        for (int page = start; page <= pageCount && page < start+MAX_PAGES; page++) {
+            // read from the ranking index, mentions are rendered by discord so no user has to be loaded
+            StringBuilder userNames = new StringBuilder(), xp = new StringBuilder();
+            levels.forEachRanked((page-1)*PAGE_SIZE, PAGE_SIZE, (userRank, userId, userXP) -> {
+                userNames.append(userRank).append(". <@").append(userId).append(">\n");
+                xp.append(context.getServer().formatLong(userXP)).append("\n");
+            });
+
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setTimestamp(context.getTime());
+            builder.setColor(LupoColor.BLUE.getColor());
+            builder.setAuthor(guild.getName() + " (" + guild.getIdLong() + ")", null, guild.getIconUrl());
+            if (size == 0) {
+                builder.setDescription(context.getServer().translate(context.getPlugin(), "leveling_ranking-empty"));
+            } else {
+                builder.addField(context.getServer().translate(context.getPlugin(), "leveling_ranking-name"), userNames.toString(), true);
+                builder.addField(context.getServer().translate(context.getPlugin(), "leveling_ranking-xp"), xp.toString(), true);
             }
-            LupoUser user = LupoUser.getById(id);
-            userNames = userNames + rank + ". " + user.getAsMention() + "\n";
-            xp = xp + context.getServer().formatLong(sortedUsers.get(id)) + "\n";
-            rank++;
+            builder.setFooter(context.getServer().translate(context.getPlugin(), "leveling_ranking-page", page, pageCount)
+                    + (rank != 0 ? " | " + context.getServer().translate(context.getPlugin(), "leveling_ranking-own-rank", rank) : ""));
+            embeds.add(builder.build());
         }
 
-        EmbedBuilder builder = new EmbedBuilder();
-        builder.setTimestamp(context.getTime());
-        builder.setColor(LupoColor.BLUE.getColor());
-        builder.setAuthor(guild.getName() + " (" + guild.getIdLong() + ")", null, guild.getIconUrl());
-        builder.addField(context.getServer().translate(context.getPlugin(), "leveling_ranking-name"), userNames, true);
-        builder.addField(context.getServer().translate(context.getPlugin(), "leveling_ranking-xp"), xp, true);
-        send(context, builder);
+        if (embeds.size() == 1) {
+            send(context, embeds.get(0));
+            return;
+        }
+        List<Page> pages = new ArrayList<>();
+        for (MessageEmbed embed : embeds) {
+            Page page = new Page(embed);
+            page.getWhitelist().add(context.getMember().getIdLong());
+            pages.add(page);
+        }
+        Paginator.paginate(context, pages, 60);
     }
 
     @Override
     public void onSlashCommand(CommandContext context, SlashCommandEvent slash) {
         onCommand(context);
     }
-}
\ No newline at end of file
+}
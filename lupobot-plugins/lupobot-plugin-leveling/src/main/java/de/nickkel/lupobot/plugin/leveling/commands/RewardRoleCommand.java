@@ -1,16 +1,19 @@
 package de.nickkel.lupobot.plugin.leveling.commands;
 
-import com.mongodb.BasicDBObject;
 import de.nickkel.lupobot.core.command.*;
 import de.nickkel.lupobot.core.data.LupoServer;
 import de.nickkel.lupobot.core.util.LupoColor;
 import de.nickkel.lupobot.plugin.leveling.LupoLevelingPlugin;
+import de.nickkel.lupobot.plugin.leveling.data.LevelingData;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 
+import java.util.ArrayList;
+import java.util.Map;
+
 @CommandInfo(name = "rewardrole", category = "administration", permissions = Permission.ADMINISTRATOR)
 @SlashSubCommand(name = "add", options = {
         @SlashOption(name = "role", type = OptionType.ROLE),
@@ -54,12 +57,9 @@ public class RewardRoleCommand extends LupoCommand {
                 return;
             }
 
-            BasicDBObject pluginObject = (BasicDBObject) server.getData().get(LupoLevelingPlugin.getInstance().getInfo().name());
-            BasicDBObject rewardObject = (BasicDBObject) pluginObject.get("rewardRoles");
-            rewardObject.append(String.valueOf(level), role.getIdLong());
-
-            pluginObject.append("rewardRoles", rewardObject);
-            server.getData().append(LupoLevelingPlugin.getInstance().getInfo().name(), pluginObject);
+            LevelingData data = LupoLevelingPlugin.getInstance().getData(server);
+            data.getRewardRoles().put(String.valueOf(level), role.getIdLong());
+            data.markDirty("rewardRoles." + level);
 
             EmbedBuilder builder = new EmbedBuilder();
             builder.setTimestamp(context.getTime());
@@ -87,13 +87,10 @@ public class RewardRoleCommand extends LupoCommand {
                 return;
             }
 
-            BasicDBObject pluginObject = (BasicDBObject) server.getData().get(LupoLevelingPlugin.getInstance().getInfo().name());
-            BasicDBObject rewardObject = (BasicDBObject) pluginObject.get("rewardRoles");
-
-            if (rewardObject.containsKey(String.valueOf(level))) {
-                rewardObject.remove(String.valueOf(level));
-                pluginObject.append("rewardRoles", rewardObject);
-                server.getData().append(this.getInfo().name(), pluginObject);
+            LevelingData data = LupoLevelingPlugin.getInstance().getData(server);
+            if (data.getRewardRoles().containsKey(String.valueOf(level))) {
+                data.getRewardRoles().remove(String.valueOf(level));
+                data.markDirty("rewardRoles." + level);
 
                 EmbedBuilder builder = new EmbedBuilder();
                 builder.setTimestamp(context.getTime());
@@ -107,24 +104,23 @@ public class RewardRoleCommand extends LupoCommand {
                 sendSyntaxError(context, "leveling_rewardrole-not-exists");
             }
         } else if ((context.getArgs().length == 1 && context.getArgs()[0].equalsIgnoreCase("list") || (context.getSlash() != null && context.getSlash().getSubcommandName().equalsIgnoreCase("list")))) {
-            BasicDBObject pluginObject = (BasicDBObject) server.getData().get(LupoLevelingPlugin.getInstance().getInfo().name());
-            BasicDBObject rewardObject = (BasicDBObject) pluginObject.get("rewardRoles");
+            Map<String, Long> rewardRoles = LupoLevelingPlugin.getInstance().getData(server).getRewardRoles();
 
             EmbedBuilder builder = new EmbedBuilder();
             builder.setTimestamp(context.getTime());
             builder.setColor(LupoColor.ORANGE.getColor());
             builder.setAuthor(context.getGuild().getName() + " (" + context.getGuild().getId() + ")", null, context.getGuild().getIconUrl());
 
-            if (rewardObject.keySet().size() == 0) {
+            if (rewardRoles.isEmpty()) {
                 builder.setDescription(context.getServer().translate(context.getPlugin(), "leveling_rewardrole-list-empty"));
                 send(context, builder);
                 return;
             }
 
             builder.setDescription(context.getServer().translate(context.getPlugin(), "leveling_rewardrole-list"));
-            for (String level : rewardObject.keySet()) {
+            for (String level : new ArrayList<>(rewardRoles.keySet())) {
                 if (LupoLevelingPlugin.getInstance().existsRewardRole(server, Long.parseLong(level))) {
-                    Role role = context.getServer().getGuild().getRoleById(rewardObject.getLong(level));
+                    Role role = context.getServer().getGuild().getRoleById(rewardRoles.get(level));
                     builder.addField(context.getServer().translate(context.getPlugin(), "leveling_rewardrole-level-list", level), role.getName() + " (" + role.getId() + ")", false);
                 }
             }
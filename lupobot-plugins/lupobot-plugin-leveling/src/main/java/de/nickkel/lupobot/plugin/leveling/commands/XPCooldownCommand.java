@@ -0,0 +1,56 @@
+package de.nickkel.lupobot.plugin.leveling.commands;
+
+import de.nickkel.lupobot.core.command.CommandContext;
+import de.nickkel.lupobot.core.command.CommandInfo;
+import de.nickkel.lupobot.core.command.LupoCommand;
+import de.nickkel.lupobot.core.command.SlashOption;
+import de.nickkel.lupobot.core.util.LupoColor;
+import de.nickkel.lupobot.plugin.leveling.LupoLevelingPlugin;
+import de.nickkel.lupobot.plugin.leveling.data.LevelingData;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+
+@CommandInfo(name = "xpcooldown", category = "administration", permissions = Permission.ADMINISTRATOR)
+@SlashOption(name = "seconds", type = OptionType.INTEGER)
+public class XPCooldownCommand extends LupoCommand {
+
+    @Override
+    public void onCommand(CommandContext context) {
+        if (context.getArgs().length == 1 || context.getSlash() != null) {
+            long seconds;
+            try {
+                if (context.getSlash() != null) {
+                    seconds = context.getSlash().getOption("seconds").getAsLong();
+                } else {
+                    seconds = Long.parseLong(context.getArgs()[0]);
+                }
+            } catch (NumberFormatException e) {
+                sendSyntaxError(context, "leveling_xpcooldown-invalid-seconds");
+                return;
+            }
+            if (seconds < 0 || seconds > 86400) {
+                sendSyntaxError(context, "leveling_xpcooldown-invalid-seconds");
+                return;
+            }
+
+            LevelingData data = LupoLevelingPlugin.getInstance().getData(context.getServer());
+            data.setXpCooldown(seconds);
+            data.markDirty("xpCooldown");
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setTimestamp(context.getTime());
+            builder.setColor(LupoColor.GREEN.getColor());
+            builder.setAuthor(context.getGuild().getName() + " (" + context.getGuild().getId() + ")", null, context.getGuild().getIconUrl());
+            builder.setDescription(context.getServer().translate(context.getPlugin(), "leveling_xpcooldown-success", seconds));
+            send(context, builder);
+        } else {
+            sendSyntaxError(context, "leveling_xpcooldown-invalid-seconds");
+        }
+    }
+
+    @Override
+    public void onSlashCommand(CommandContext context, SlashCommandEvent slash) {
+        onCommand(context);
+    }
+}
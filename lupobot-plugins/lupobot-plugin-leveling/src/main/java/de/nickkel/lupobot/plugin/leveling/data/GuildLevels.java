@@ -0,0 +1,222 @@
+package de.nickkel.lupobot.plugin.leveling.data;
+
+import com.mongodb.BasicDBObject;
+import lombok.Getter;
+
+import java.util.List;
+
+// xp, level and the time of the next xp of every member in primitive arrays, so awarding xp allocates nothing
+// open addressing with linear probing, a user id of 0 marks a free slot
+// the ranking is kept next to it and moved along with every change of xp
+public class GuildLevels {
+
+    // returned by award if the guild was removed from the store, the xp has to be added to the reloaded one
+    public static final long RETIRED = -2;
+
+    @Getter
+    private final long guildId;
+    private long[] users, xp, levels, nextAllowed, pendingXp, pendingLevels;
+    private boolean[] dirty;
+    private RankingIndex.Node[] nodes;
+    private final RankingIndex ranking = new RankingIndex();
+    private int size, dirtySize;
+    @Getter
+    private volatile long lastAccess = System.currentTimeMillis();
+    @Getter
+    private volatile boolean retired;
+
+    public GuildLevels(long guildId, List<BasicDBObject> documents) {
+        this.guildId = guildId;
+        int capacity = 16;
+        while (capacity < documents.size()*2) {
+            capacity *= 2;
+        }
+        this.allocate(capacity);
+        for (BasicDBObject document : documents) {
+            int slot = this.slot(document.getLong("user"));
+            this.levels[slot] = document.getLong("level", 0);
+            this.xp[slot] = document.getLong("xp", 0);
+            this.rank(slot);
+        }
+    }
+
+    void touch() {
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    public synchronized long getXp(long userId) {
+        int slot = this.find(userId);
+        return this.users[slot] == 0 ? 0 : this.xp[slot];
+    }
+
+    public synchronized long getLevel(long userId) {
+        int slot = this.find(userId);
+        return this.users[slot] == 0 ? 0 : this.levels[slot];
+    }
+
+    public synchronized boolean isReady(long userId, long now) {
+        int slot = this.find(userId);
+        return this.users[slot] == 0 || this.nextAllowed[slot] <= now;
+    }
+
+    // adds the xp and returns the number of levels reached with it, -1 if the member has to wait for the cooldown or RETIRED
+    public synchronized long award(long userId, long xp, long now, long cooldown, boolean checkCooldown) {
+        if (this.retired) {
+            return RETIRED;
+        }
+        int slot = this.find(userId);
+        if (checkCooldown && this.users[slot] != 0 && this.nextAllowed[slot] > now) {
+            return -1;
+        }
+        if (this.users[slot] == 0) {
+            slot = this.slot(userId);
+        }
+        this.nextAllowed[slot] = now+cooldown;
+        this.xp[slot] += xp;
+        long level = LevelCurve.getLevel(this.xp[slot], this.levels[slot]);
+        long reached = level-this.levels[slot];
+        this.levels[slot] = level;
+        this.rank(slot);
+        this.pendingXp[slot] += xp;
+        this.pendingLevels[slot] += reached;
+        this.markDirty(slot);
+        return reached;
+    }
+
+    // values which are not in the collection yet, e.g. from the migration
+    synchronized void raise(long userId, long level, long xp) {
+        int slot = this.slot(userId);
+        this.levels[slot] = Math.max(this.levels[slot], level);
+        this.xp[slot] = Math.max(this.xp[slot], xp);
+        this.rank(slot);
+    }
+
+    // only a saved guild can be retired, nothing can be added to it afterwards
+    synchronized boolean retire() {
+        if (this.dirtySize != 0) {
+            return false;
+        }
+        this.retired = true;
+        return true;
+    }
+
+    // hands the increments since the last call to the consumer and resets them
+    synchronized void drain(MemberConsumer consumer) {
+        for (int slot = 0; slot < this.users.length && this.dirtySize != 0; slot++) {
+            if (!this.dirty[slot]) {
+                continue;
+            }
+            this.dirty[slot] = false;
+            this.dirtySize--;
+            if (this.pendingLevels[slot] != 0 || this.pendingXp[slot] != 0) {
+                consumer.accept(this.users[slot], this.pendingLevels[slot], this.pendingXp[slot]);
+            }
+            this.pendingLevels[slot] = 0;
+            this.pendingXp[slot] = 0;
+        }
+    }
+
+    // adds the increments of a failed write again, so they are part of the next one
+    synchronized void restore(long userId, long level, long xp) {
+        int slot = this.slot(userId);
+        this.pendingLevels[slot] += level;
+        this.pendingXp[slot] += xp;
+        this.markDirty(slot);
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    // 1 for the member with the most xp, 0 if the member has no xp yet
+    public synchronized int getRank(long userId) {
+        int slot = this.find(userId);
+        return this.users[slot] == 0 || this.nodes[slot] == null ? 0 : this.ranking.getRank(this.nodes[slot]);
+    }
+
+    public synchronized int getRankedSize() {
+        return this.ranking.size();
+    }
+
+    public synchronized void forEachRanked(int offset, int limit, RankingIndex.RankConsumer consumer) {
+        this.ranking.forEach(offset, limit, consumer);
+    }
+
+    private void rank(int slot) {
+        if (this.nodes[slot] == null) {
+            this.nodes[slot] = this.ranking.insert(this.users[slot], this.xp[slot]);
+        } else {
+            this.ranking.update(this.nodes[slot], this.xp[slot]);
+        }
+    }
+
+    private void markDirty(int slot) {
+        if (!this.dirty[slot]) {
+            this.dirty[slot] = true;
+            this.dirtySize++;
+        }
+    }
+
+    private int find(long userId) {
+        int mask = this.users.length-1;
+        int slot = hash(userId) & mask;
+        while (this.users[slot] != 0 && this.users[slot] != userId) {
+            slot = (slot+1) & mask;
+        }
+        return slot;
+    }
+
+    // the slot of the member, a free one is taken if the member is not known yet
+    private int slot(long userId) {
+        int slot = this.find(userId);
+        if (this.users[slot] == 0) {
+            if (++this.size > this.users.length/2) {
+                this.resize(this.users.length*2);
+                slot = this.find(userId);
+            }
+            this.users[slot] = userId;
+        }
+        return slot;
+    }
+
+    private static int hash(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        this.users = new long[capacity];
+        this.xp = new long[capacity];
+        this.levels = new long[capacity];
+        this.nextAllowed = new long[capacity];
+        this.pendingXp = new long[capacity];
+        this.pendingLevels = new long[capacity];
+        this.dirty = new boolean[capacity];
+        this.nodes = new RankingIndex.Node[capacity];
+    }
+
+    private void resize(int capacity) {
+        long[] users = this.users, xp = this.xp, levels = this.levels, nextAllowed = this.nextAllowed,
+                pendingXp = this.pendingXp, pendingLevels = this.pendingLevels;
+        boolean[] dirty = this.dirty;
+        RankingIndex.Node[] nodes = this.nodes;
+        this.allocate(capacity);
+        for (int i = 0; i < users.length; i++) {
+            if (users[i] != 0) {
+                int slot = this.find(users[i]);
+                this.users[slot] = users[i];
+                this.xp[slot] = xp[i];
+                this.levels[slot] = levels[i];
+                this.nextAllowed[slot] = nextAllowed[i];
+                this.pendingXp[slot] = pendingXp[i];
+                this.pendingLevels[slot] = pendingLevels[i];
+                this.dirty[slot] = dirty[i];
+                this.nodes[slot] = nodes[i];
+            }
+        }
+    }
+
+    public interface MemberConsumer {
+        void accept(long userId, long level, long xp);
+    }
+}
@@ -0,0 +1,33 @@
+package de.nickkel.lupobot.plugin.leveling.data;
+
+// total xp needed for a level, the thresholds of the first levels are calculated once instead of on every message
+public final class LevelCurve {
+
+    private static final long[] REQUIRED = new long[1001];
+
+    static {
+        for (int level = 0; level < REQUIRED.length; level++) {
+            REQUIRED[level] = calculate(level);
+        }
+    }
+
+    private LevelCurve() {
+    }
+
+    public static long getRequiredXP(long level) {
+        return level >= 0 && level < REQUIRED.length ? REQUIRED[(int) level] : calculate(level);
+    }
+
+    // the level reached with the given xp, counted up from a level which is known to be reached
+    public static long getLevel(long xp, long from) {
+        long level = from;
+        while (xp >= getRequiredXP(level+1)) {
+            level++;
+        }
+        return level;
+    }
+
+    private static long calculate(long level) {
+        return Math.round(0.83333333333 * level * (2 * Math.pow(level, 2) + 27 * level + 91));
+    }
+}
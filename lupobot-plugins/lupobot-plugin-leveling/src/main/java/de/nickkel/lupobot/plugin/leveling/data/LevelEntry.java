@@ -0,0 +1,10 @@
+package de.nickkel.lupobot.plugin.leveling.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+public class LevelEntry {
+
+    @Getter @Setter
+    private long level, xp;
+}
@@ -0,0 +1,22 @@
+package de.nickkel.lupobot.plugin.leveling.data;
+
+import de.nickkel.lupobot.core.data.EntityData;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LevelingData extends EntityData {
+
+    @Getter @Setter
+    private String levelUpMessage;
+    @Getter @Setter
+    private Map<String, Long> rewardRoles = new HashMap<>();
+    // seconds a member has to wait until the next message gives xp again
+    @Getter @Setter
+    private long xpCooldown = 60;
+    // old location of the xp, only read to move it into the leveling collection (see LevelingStore)
+    @Getter @Setter
+    private Map<String, LevelEntry> xp;
+}
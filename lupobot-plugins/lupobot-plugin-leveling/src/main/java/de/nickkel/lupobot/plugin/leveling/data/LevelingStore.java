@@ -0,0 +1,220 @@
+package de.nickkel.lupobot.plugin.leveling.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import de.nickkel.lupobot.core.LupoBot;
+import de.nickkel.lupobot.core.data.DataStore;
+import de.nickkel.lupobot.core.data.LupoServer;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// xp and levels are stored in their own collection with one document per member instead of inside the server document
+// only increments are written, so a save never has to rewrite the data of the whole guild
+// every document keeps the sequence of the last flush which changed it, so a batch with an unknown outcome can be sent again
+public class LevelingStore {
+
+    private static final String COLLECTION = "leveling";
+    private static final int BATCH_SIZE = 500;
+    private static final long IDLE_TIME = 30*60*1000;
+
+    private final Map<Long, CompletableFuture<GuildLevels>> guilds = new ConcurrentHashMap<>();
+    private final Set<GuildLevels> dirty = ConcurrentHashMap.newKeySet();
+    private final Timer timer = new Timer("LevelingSaver", true);
+    private final List<Batch> pending = new ArrayList<>();
+    private long sequence;
+
+    public LevelingStore() {
+        this.timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                // an exception must not reach the timer, it would cancel every following save
+                try {
+                    LevelingStore.this.flush();
+                    LevelingStore.this.expire();
+                } catch (RuntimeException e) {
+                    LupoBot.getInstance().getLogger().error("Could not save leveling data:", e);
+                }
+            }
+        }, 60*1000, 60*1000);
+    }
+
+    public CompletableFuture<Void> createIndex() {
+        return DataStore.first(LupoBot.getInstance().getDataStore().getCollection(COLLECTION)
+                .createIndex(Indexes.ascending("guild", "user"), new IndexOptions().unique(true))).thenApply(result -> null);
+    }
+
+    public CompletableFuture<GuildLevels> load(LupoServer server) {
+        long guildId = server.getGuild().getIdLong();
+        CompletableFuture<GuildLevels> future = this.guilds.computeIfAbsent(guildId, id ->
+                LupoBot.getInstance().getDataStore().find(COLLECTION, new BasicDBObject("guild", id), new BasicDBObject(), 0)
+                        .thenComposeAsync(documents -> this.migrate(server, new GuildLevels(id, documents)), LupoBot.getInstance().getDataService()));
+        GuildLevels loaded = future.getNow(null);
+        if (loaded != null && loaded.isRetired()) { // expired right now, loaded again
+            this.guilds.remove(guildId, future);
+            return this.load(server);
+        }
+        if (loaded != null) {
+            loaded.touch();
+        } else {
+            future.whenComplete((levels, throwable) -> {
+                if (throwable != null) { // tried again with the next access
+                    this.guilds.remove(guildId, future);
+                }
+            });
+        }
+        return future;
+    }
+
+    // the xp of a guild if it is loaded, without creating a future like load
+    public GuildLevels get(long guildId) {
+        CompletableFuture<GuildLevels> future = this.guilds.get(guildId);
+        GuildLevels levels = future != null ? future.getNow(null) : null;
+        if (levels == null || levels.isRetired()) {
+            return null;
+        }
+        levels.touch();
+        return levels;
+    }
+
+    // see GuildLevels#award, the guild is only added once to the changed guilds
+    public long award(GuildLevels levels, long userId, long xp, long now, long cooldown, boolean checkCooldown) {
+        long reached = levels.award(userId, xp, now, cooldown, checkCooldown);
+        if (reached >= 0) {
+            this.dirty.add(levels);
+        }
+        return reached;
+    }
+
+    // moves the entries of the old server document into the collection, they are only removed from it once they are written
+    private CompletableFuture<GuildLevels> migrate(LupoServer server, GuildLevels levels) {
+        LevelingData data = server.data(LevelingData.class);
+        Map<String, LevelEntry> embedded = data.getXp();
+        if (embedded == null || embedded.isEmpty()) {
+            return CompletableFuture.completedFuture(levels);
+        }
+
+        List<UpdateOneModel<BasicDBObject>> models = new ArrayList<>();
+        for (Map.Entry<String, LevelEntry> entry : embedded.entrySet()) {
+            long userId = Long.parseLong(entry.getKey());
+            // $max instead of $set, a migration which was interrupted can run again without losing newer xp
+            BasicDBObject max = new BasicDBObject("level", entry.getValue().getLevel()).append("xp", entry.getValue().getXp());
+            models.add(new UpdateOneModel<>(this.filter(levels.getGuildId(), userId), new BasicDBObject("$max", max), new UpdateOptions().upsert(true)));
+            levels.raise(userId, entry.getValue().getLevel(), entry.getValue().getXp());
+        }
+        return LupoBot.getInstance().getDataStore().bulkWrite(COLLECTION, models, new BulkWriteOptions().ordered(false)).thenApply(result -> {
+            data.setXp(null);
+            data.markDirty("xp");
+            LupoBot.getInstance().getLogger().info("Migrated " + models.size() + " leveling entries of guild " + levels.getGuildId());
+            return levels;
+        });
+    }
+
+    public synchronized void flush() {
+        // a newer flush must not be written before them, its sequence would let them be applied again
+        List<Batch> retries = new ArrayList<>(this.pending);
+        this.pending.clear();
+        for (Batch batch : retries) {
+            this.write(batch, true);
+        }
+        if (!this.pending.isEmpty()) {
+            return;
+        }
+
+        List<GuildLevels> guilds = new ArrayList<>();
+        Iterator<GuildLevels> iterator = this.dirty.iterator();
+        while (iterator.hasNext()) {
+            guilds.add(iterator.next());
+            iterator.remove();
+        }
+
+        long sequence = this.sequence = Math.max(this.sequence+1, System.currentTimeMillis());
+        List<Batch> batches = new ArrayList<>();
+        for (GuildLevels levels : guilds) {
+            levels.drain((userId, level, xp) -> {
+                BasicDBObject inc = new BasicDBObject();
+                if (level != 0) {
+                    inc.append("level", level);
+                }
+                if (xp != 0) {
+                    inc.append("xp", xp);
+                }
+                if (batches.isEmpty() || batches.get(batches.size()-1).models.size() == BATCH_SIZE) {
+                    batches.add(new Batch());
+                }
+                Batch batch = batches.get(batches.size()-1);
+                BasicDBObject filter = this.filter(levels.getGuildId(), userId).append("flush", new BasicDBObject("$ne", sequence));
+                BasicDBObject update = new BasicDBObject("$inc", inc).append("$set", new BasicDBObject("flush", sequence));
+                batch.levels.add(levels);
+                batch.models.add(new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true)));
+            });
+        }
+        for (Batch batch : batches) {
+            this.write(batch, false);
+        }
+    }
+
+    private void write(Batch batch, boolean retry) {
+        try {
+            LupoBot.getInstance().getDataStore().bulkWrite(COLLECTION, batch.models, new BulkWriteOptions().ordered(false)).join();
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof MongoBulkWriteException) {
+                // the other writes of an unordered batch are applied, the rejected ones are added to the next flush
+                // the filter of a write which was already applied does not match anymore, so its upsert hits the unique index
+                for (BulkWriteError error : ((MongoBulkWriteException) cause).getWriteErrors()) {
+                    if (!retry || error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                        this.restore(batch.levels.get(error.getIndex()), batch.models.get(error.getIndex()));
+                    }
+                }
+            } else { // could be applied or not, sent again as it is
+                this.pending.add(batch);
+            }
+            LupoBot.getInstance().getLogger().error("Could not save leveling data of " + batch.models.size() + " members:", cause);
+        }
+    }
+
+    private void restore(GuildLevels levels, UpdateOneModel<BasicDBObject> model) {
+        BasicDBObject inc = (BasicDBObject) ((BasicDBObject) model.getUpdate()).get("$inc");
+        levels.restore(((BasicDBObject) model.getFilter()).getLong("user"), inc.getLong("level", 0), inc.getLong("xp", 0));
+        this.dirty.add(levels);
+    }
+
+    // guilds without messages for a while are loaded again from the collection on their next access, only saved ones are removed
+    // a removed guild is retired, xp for it is added to the reloaded one instead of getting lost
+    private synchronized void expire() {
+        Set<GuildLevels> unsaved = new HashSet<>();
+        for (Batch batch : this.pending) {
+            unsaved.addAll(batch.levels);
+        }
+        long now = System.currentTimeMillis();
+        this.guilds.values().removeIf(future -> {
+            GuildLevels levels = future.getNow(null);
+            return levels != null && now-levels.getLastAccess() > IDLE_TIME && !this.dirty.contains(levels) && !unsaved.contains(levels)
+                    && levels.retire();
+        });
+    }
+
+    private BasicDBObject filter(long guildId, long userId) {
+        return new BasicDBObject("guild", guildId).append("user", userId);
+    }
+
+    public void close() {
+        this.timer.cancel();
+        this.flush();
+    }
+
+    private static class Batch {
+        private final List<GuildLevels> levels = new ArrayList<>();
+        private final List<UpdateOneModel<BasicDBObject>> models = new ArrayList<>();
+    }
+}
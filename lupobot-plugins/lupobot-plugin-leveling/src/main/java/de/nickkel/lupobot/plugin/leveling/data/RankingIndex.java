@@ -0,0 +1,165 @@
+package de.nickkel.lupobot.plugin.leveling.data;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// members ordered by xp (members with the same xp by id) in a skip list, every link knows how many members it skips
+// so the rank of a member and the member at a rank are found in O(log n), access has to be synchronized by the owner
+public class RankingIndex {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Node head = new Node(0, 0, MAX_LEVEL);
+    // reused for every change, a change of xp allocates nothing
+    private final Node[] update = new Node[MAX_LEVEL];
+    private final int[] rank = new int[MAX_LEVEL];
+    private int level = 1, size;
+
+    public Node insert(long userId, long xp) {
+        Node node = new Node(userId, xp, randomLevel());
+        this.link(node);
+        return node;
+    }
+
+    // the node is moved to its new position instead of being replaced
+    public void update(Node node, long xp) {
+        if (node.xp == xp) {
+            return;
+        }
+        this.unlink(node);
+        node.xp = xp;
+        this.link(node);
+    }
+
+    // 1 for the member with the most xp
+    public int getRank(Node node) {
+        Node x = this.head;
+        int rank = 0;
+        for (int i = this.level-1; i >= 0; i--) {
+            while (x.next[i] != null && !before(node, x.next[i])) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == node) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    // the members from the rank after offset on, at most limit
+    public void forEach(int offset, int limit, RankConsumer consumer) {
+        if (offset < 0 || offset >= this.size) {
+            return;
+        }
+        Node x = this.getByRank(offset+1);
+        for (int rank = offset+1; x != null && rank <= offset+limit; rank++) {
+            consumer.accept(rank, x.userId, x.xp);
+            x = x.next[0];
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private Node getByRank(int rank) {
+        Node x = this.head;
+        int traversed = 0;
+        for (int i = this.level-1; i >= 0; i--) {
+            while (x.next[i] != null && traversed+x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == rank) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private void link(Node node) {
+        Node x = this.head;
+        for (int i = this.level-1; i >= 0; i--) {
+            this.rank[i] = i == this.level-1 ? 0 : this.rank[i+1];
+            while (x.next[i] != null && before(x.next[i], node)) {
+                this.rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            this.update[i] = x;
+        }
+
+        int nodeLevel = node.next.length;
+        if (nodeLevel > this.level) {
+            for (int i = this.level; i < nodeLevel; i++) {
+                this.rank[i] = 0;
+                this.update[i] = this.head;
+                this.head.span[i] = this.size;
+            }
+            this.level = nodeLevel;
+        }
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = this.update[i].next[i];
+            this.update[i].next[i] = node;
+            node.span[i] = this.update[i].span[i]-(this.rank[0]-this.rank[i]);
+            this.update[i].span[i] = this.rank[0]-this.rank[i]+1;
+        }
+        for (int i = nodeLevel; i < this.level; i++) {
+            this.update[i].span[i]++;
+        }
+        this.size++;
+    }
+
+    private void unlink(Node node) {
+        Node x = this.head;
+        for (int i = this.level-1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], node)) {
+                x = x.next[i];
+            }
+            this.update[i] = x;
+        }
+
+        for (int i = 0; i < this.level; i++) {
+            if (this.update[i].next[i] == node) {
+                this.update[i].span[i] += node.span[i]-1;
+                this.update[i].next[i] = node.next[i];
+            } else {
+                this.update[i].span[i]--;
+            }
+        }
+        while (this.level > 1 && this.head.next[this.level-1] == null) {
+            this.level--;
+        }
+        this.size--;
+    }
+
+    private static boolean before(Node first, Node second) {
+        return first.xp > second.xp || (first.xp == second.xp && first.userId < second.userId);
+    }
+
+    private static int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && (ThreadLocalRandom.current().nextInt() & 3) == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    public static class Node {
+
+        private final long userId;
+        private long xp;
+        private final Node[] next;
+        private final int[] span;
+
+        private Node(long userId, long xp, int level) {
+            this.userId = userId;
+            this.xp = xp;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    public interface RankConsumer {
+        void accept(int rank, long userId, long xp);
+    }
+}
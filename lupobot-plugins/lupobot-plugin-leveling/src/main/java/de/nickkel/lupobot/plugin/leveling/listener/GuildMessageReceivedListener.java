@@ -1,5 +1,6 @@
 package de.nickkel.lupobot.plugin.leveling.listener;
 
+import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoServer;
 import de.nickkel.lupobot.core.data.LupoUser;
 import de.nickkel.lupobot.plugin.leveling.LupoLevelingPlugin;
@@ -10,14 +11,29 @@ public class GuildMessageReceivedListener extends ListenerAdapter {
 
     @Override
     public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
         if (event.getMember() == null) {
             return;
         }
 
-        LupoUser user = LupoUser.getByMember(event.getMember());
-        if (LupoLevelingPlugin.getInstance().isReadyToReceiveXP(server, user)) {
-            LupoLevelingPlugin.getInstance().addXP(server, user, LupoLevelingPlugin.getInstance().getRandomXP(), event.getChannel());
+        // most messages come from loaded guilds and members, they get their xp right away without any future
+        LupoServer server = LupoBot.getInstance().getServers().getLoader().getIfLoaded(event.getGuild().getIdLong());
+        LupoUser user = LupoBot.getInstance().getUsers().getLoader().getIfLoaded(event.getAuthor().getIdLong());
+        if (server != null && user != null && LupoLevelingPlugin.getInstance().getStore().get(event.getGuild().getIdLong()) != null) {
+            try {
+                LupoLevelingPlugin.getInstance().addMessageXP(server, user, event.getChannel());
+            } catch (RuntimeException e) {
+                LupoBot.getInstance().getLogger().error("Could not add xp to user " + event.getAuthor().getId() + ":", e);
+            }
+            return;
         }
+
+        // the xp of the guild is loaded here, so adding it does not block the thread
+        LupoServer.loadByGuild(event.getGuild()).thenCompose(server -> LupoLevelingPlugin.getInstance().getStore().load(server).thenApply(levels -> server)).thenCombine(LupoUser.loadByMember(event.getMember()), (server, user) -> {
+            LupoLevelingPlugin.getInstance().addMessageXP(server, user, event.getChannel());
+            return null;
+        }).exceptionally(throwable -> {
+            LupoBot.getInstance().getLogger().error("Could not add xp to user " + event.getAuthor().getId() + ":", throwable);
+            return null;
+        });
     }
 }
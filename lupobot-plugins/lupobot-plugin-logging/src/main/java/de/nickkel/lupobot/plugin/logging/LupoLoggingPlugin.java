@@ -2,6 +2,7 @@ package de.nickkel.lupobot.plugin.logging;
 
 import de.nickkel.lupobot.core.LupoBot;
 import de.nickkel.lupobot.core.data.LupoServer;
+import de.nickkel.lupobot.core.message.MessagePriority;
 import de.nickkel.lupobot.core.plugin.LupoPlugin;
 import de.nickkel.lupobot.core.plugin.PluginInfo;
 import de.nickkel.lupobot.core.util.ListenerRegister;
@@ -30,12 +31,15 @@ public class LupoLoggingPlugin extends LupoPlugin {
     }
 
     public void sendLog(LogEvent event, Guild guild, EmbedBuilder builder) {
-        long channelId = LupoLoggingPlugin.getInstance().getChannelId(event, guild);
-        if (channelId != -1) {
-            TextChannel channel = guild.getTextChannelById(channelId);
-            builder.setDescription(LupoServer.getByGuild(guild).translate(LupoBot.getInstance().getPlugin(this.getInfo().name()), event.getLocale()));
-            channel.sendMessage(builder.build()).queue();
-        }
+        LupoServer.loadByGuild(guild).thenAccept(server -> {
+            long channelId = LupoLoggingPlugin.getInstance().getChannelId(event, guild);
+            if (channelId != -1) {
+                TextChannel channel = guild.getTextChannelById(channelId);
+                builder.setDescription(server.translate(LupoBot.getInstance().getPlugin(this.getInfo().name()), event.getLocale()));
+                // logs of busy channels are sent together and after command replies
+                LupoBot.getInstance().getMessageScheduler().queueEmbed(MessagePriority.LOG, channel, builder.build());
+            }
+        });
     }
 
     public long getChannelId(LogEvent event, Guild guild) {
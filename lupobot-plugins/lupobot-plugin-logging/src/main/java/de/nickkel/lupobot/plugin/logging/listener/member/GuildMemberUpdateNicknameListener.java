@@ -15,25 +15,26 @@ public class GuildMemberUpdateNicknameListener extends ListenerAdapter {
 
     @Override
     public void onGuildMemberUpdateNickname(@NotNull GuildMemberUpdateNicknameEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
-        LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LupoServer.loadByGuild(event.getGuild()).thenAccept(server -> {
+            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-        String old = event.getOldNickname();
-        if (event.getOldNickname() == null || event.getOldNickname().equals("")) {
-            old = "/";
-        }
-        String current = event.getNewNickname();
-        if (event.getNewNickname() == null || event.getNewNickname().equals("")) {
-            current = "/";
-        }
+            String old = event.getOldNickname();
+            if (event.getOldNickname() == null || event.getOldNickname().equals("")) {
+                old = "/";
+            }
+            String current = event.getNewNickname();
+            if (event.getNewNickname() == null || event.getNewNickname().equals("")) {
+                current = "/";
+            }
 
-        EmbedBuilder builder = new EmbedBuilder();
-        builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
-                null, event.getMember().getUser().getAvatarUrl());
-        builder.addField(server.translate(plugin, "logging_nickname-old"), old, false);
-        builder.addField(server.translate(plugin, "logging_nickname-new"), current, false);
-        builder.setColor(LupoColor.ORANGE.getColor());
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
+                    null, event.getMember().getUser().getAvatarUrl());
+            builder.addField(server.translate(plugin, "logging_nickname-old"), old, false);
+            builder.addField(server.translate(plugin, "logging_nickname-new"), current, false);
+            builder.setColor(LupoColor.ORANGE.getColor());
 
-        LupoLoggingPlugin.getInstance().sendLog(LogEvent.NICKNAME_UPDATE, event.getGuild(), builder);
+            LupoLoggingPlugin.getInstance().sendLog(LogEvent.NICKNAME_UPDATE, event.getGuild(), builder);
+        });
     }
-}
\ No newline at end of file
+}
@@ -15,23 +15,26 @@ public class GuildMessageDeleteListener extends ListenerAdapter {
 
     @Override
     public void onGuildMessageDelete(GuildMessageDeleteEvent event) {
-        LogMessage message = new LogMessage(event.getMessageIdLong(), false);
-        try {
-            LupoServer server = LupoServer.getByGuild(event.getGuild());
-            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LogMessage.load(event.getMessageIdLong(), false).thenAcceptBoth(LupoServer.loadByGuild(event.getGuild()), (message, server) -> {
+            if (message == null) {
+                return;
+            }
+            try {
+                LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-            EmbedBuilder builder = new EmbedBuilder();
-            builder.setAuthor(message.get("authorAsTag") + " (" + message.get("authorId") + ")",
-                    null, message.get("authorAvatarUrl"));
-            builder.addField(server.translate(plugin, "logging_message-channel"), event.getChannel().getAsMention()
-                    + " (" + event.getChannel().getId() + ")", false);
-            builder.addField(server.translate(plugin, "logging_message-id"), event.getMessageId(), false);
-            builder.addField(server.translate(plugin, "logging_message-content"), message.get("content"), false);
-            builder.setColor(LupoColor.RED.getColor());
+                EmbedBuilder builder = new EmbedBuilder();
+                builder.setAuthor(message.get("authorAsTag") + " (" + message.get("authorId") + ")",
+                        null, message.get("authorAvatarUrl"));
+                builder.addField(server.translate(plugin, "logging_message-channel"), event.getChannel().getAsMention()
+                        + " (" + event.getChannel().getId() + ")", false);
+                builder.addField(server.translate(plugin, "logging_message-id"), event.getMessageId(), false);
+                builder.addField(server.translate(plugin, "logging_message-content"), message.get("content"), false);
+                builder.setColor(LupoColor.RED.getColor());
 
-            LupoLoggingPlugin.getInstance().sendLog(LogEvent.MESSAGE_DELETE, event.getGuild(), builder);
-            message.delete();
-        } catch(Exception ignored) {
-        }
+                LupoLoggingPlugin.getInstance().sendLog(LogEvent.MESSAGE_DELETE, event.getGuild(), builder);
+                message.delete();
+            } catch(Exception ignored) {
+            }
+        });
     }
 }
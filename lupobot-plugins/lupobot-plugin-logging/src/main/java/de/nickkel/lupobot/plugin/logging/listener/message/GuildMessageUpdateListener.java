@@ -19,24 +19,24 @@ public class GuildMessageUpdateListener extends ListenerAdapter {
         if (event.getMessage().getAuthor().isBot()) {
             return;
         }
-        LogMessage message = new LogMessage(event.getMessage().getIdLong(), true);
-        try {
-            LupoServer server = LupoServer.getByGuild(event.getGuild());
-            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LogMessage.load(event.getMessage().getIdLong(), true).thenCombine(LupoServer.loadByGuild(event.getGuild()), (message, server) -> {
+            try {
+                LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-            EmbedBuilder builder = new EmbedBuilder();
-            builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
-                    null, event.getMember().getUser().getAvatarUrl());
-            builder.addField(server.translate(plugin, "logging_message-channel"), event.getChannel().getAsMention()
-                    + " (" + event.getChannel().getId() + ")", false);
-            builder.addField(server.translate(plugin, "logging_message-id"), event.getMessageId(), false);
-            builder.addField(server.translate(plugin, "logging_message-old"), message.get("content"), false);
-            builder.addField(server.translate(plugin, "logging_message-new"), event.getMessage().getContentDisplay(), false);
-            builder.setColor(LupoColor.GREEN.getColor());
+                EmbedBuilder builder = new EmbedBuilder();
+                builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
+                        null, event.getMember().getUser().getAvatarUrl());
+                builder.addField(server.translate(plugin, "logging_message-channel"), event.getChannel().getAsMention()
+                        + " (" + event.getChannel().getId() + ")", false);
+                builder.addField(server.translate(plugin, "logging_message-id"), event.getMessageId(), false);
+                builder.addField(server.translate(plugin, "logging_message-old"), message.get("content"), false);
+                builder.addField(server.translate(plugin, "logging_message-new"), event.getMessage().getContentDisplay(), false);
+                builder.setColor(LupoColor.GREEN.getColor());
 
-            LupoLoggingPlugin.getInstance().sendLog(LogEvent.MESSAGE_UPDATE, event.getGuild(), builder);
-        } catch (Exception ignored) {
-        }
-        message.update(event.getMessage());
+                LupoLoggingPlugin.getInstance().sendLog(LogEvent.MESSAGE_UPDATE, event.getGuild(), builder);
+            } catch (Exception ignored) {
+            }
+            return message.update(event.getMessage());
+        });
     }
 }
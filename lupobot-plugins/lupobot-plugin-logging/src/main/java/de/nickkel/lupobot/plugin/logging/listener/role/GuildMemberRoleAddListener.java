@@ -16,20 +16,21 @@ public class GuildMemberRoleAddListener extends ListenerAdapter {
 
     @Override
     public void onGuildMemberRoleAdd(@NotNull GuildMemberRoleAddEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
-        LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LupoServer.loadByGuild(event.getGuild()).thenAccept(server -> {
+            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-        String roles = "";
-        for (Role role : event.getRoles()) {
-            roles = roles + role.getName() + " (" + role.getId() + ")\n";
-        }
+            String roles = "";
+            for (Role role : event.getRoles()) {
+                roles = roles + role.getName() + " (" + role.getId() + ")\n";
+            }
 
-        EmbedBuilder builder = new EmbedBuilder();
-        builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
-                null, event.getMember().getUser().getAvatarUrl());
-        builder.addField(server.translate(plugin, "logging_role-new"), roles, false);
-        builder.setColor(LupoColor.GREEN.getColor());
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
+                    null, event.getMember().getUser().getAvatarUrl());
+            builder.addField(server.translate(plugin, "logging_role-new"), roles, false);
+            builder.setColor(LupoColor.GREEN.getColor());
 
-        LupoLoggingPlugin.getInstance().sendLog(LogEvent.ROLE_ADD, event.getGuild(), builder);
+            LupoLoggingPlugin.getInstance().sendLog(LogEvent.ROLE_ADD, event.getGuild(), builder);
+        });
     }
 }
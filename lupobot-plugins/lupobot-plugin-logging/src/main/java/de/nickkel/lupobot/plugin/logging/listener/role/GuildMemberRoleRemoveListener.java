@@ -16,20 +16,21 @@ public class GuildMemberRoleRemoveListener extends ListenerAdapter {
 
     @Override
     public void onGuildMemberRoleRemove(@NotNull GuildMemberRoleRemoveEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
-        LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LupoServer.loadByGuild(event.getGuild()).thenAccept(server -> {
+            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-        String roles = "";
-        for (Role role : event.getRoles()) {
-            roles = roles + role.getName() + " (" + role.getId() + ")\n";
-        }
+            String roles = "";
+            for (Role role : event.getRoles()) {
+                roles = roles + role.getName() + " (" + role.getId() + ")\n";
+            }
 
-        EmbedBuilder builder = new EmbedBuilder();
-        builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
-                null, event.getMember().getUser().getAvatarUrl());
-        builder.addField(server.translate(plugin, "logging_role-old"), roles, false);
-        builder.setColor(LupoColor.RED.getColor());
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
+                    null, event.getMember().getUser().getAvatarUrl());
+            builder.addField(server.translate(plugin, "logging_role-old"), roles, false);
+            builder.setColor(LupoColor.RED.getColor());
 
-        LupoLoggingPlugin.getInstance().sendLog(LogEvent.ROLE_REMOVE, event.getGuild(), builder);
+            LupoLoggingPlugin.getInstance().sendLog(LogEvent.ROLE_REMOVE, event.getGuild(), builder);
+        });
     }
 }
@@ -15,25 +15,26 @@ public class GuildUserUpdateActivityOrderListener extends ListenerAdapter {
 
     @Override
     public void onUserUpdateActivityOrder(@NotNull UserUpdateActivityOrderEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
-        LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LupoServer.loadByGuild(event.getGuild()).thenAccept(server -> {
+            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-        String old = "/";
-        if (event.getOldValue().size() == 1) {
-            old = event.getOldValue().get(0).getName();
-        }
-        String current = "/";
-        if (event.getOldValue().size() == 1) {
-            current = event.getNewValue().get(0).getName();
-        }
+            String old = "/";
+            if (event.getOldValue().size() == 1) {
+                old = event.getOldValue().get(0).getName();
+            }
+            String current = "/";
+            if (event.getOldValue().size() == 1) {
+                current = event.getNewValue().get(0).getName();
+            }
 
-        EmbedBuilder builder = new EmbedBuilder();
-        builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
-                null, event.getMember().getUser().getAvatarUrl());
-        builder.addField(server.translate(plugin, "logging_activity-old"), old, false);
-        builder.addField(server.translate(plugin, "logging_activity-new"), current, false);
-        builder.setColor(LupoColor.ORANGE.getColor());
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
+                    null, event.getMember().getUser().getAvatarUrl());
+            builder.addField(server.translate(plugin, "logging_activity-old"), old, false);
+            builder.addField(server.translate(plugin, "logging_activity-new"), current, false);
+            builder.setColor(LupoColor.ORANGE.getColor());
 
-        LupoLoggingPlugin.getInstance().sendLog(LogEvent.ACTIVITY_UPDATE, event.getGuild(), builder);
+            LupoLoggingPlugin.getInstance().sendLog(LogEvent.ACTIVITY_UPDATE, event.getGuild(), builder);
+        });
     }
-}
\ No newline at end of file
+}
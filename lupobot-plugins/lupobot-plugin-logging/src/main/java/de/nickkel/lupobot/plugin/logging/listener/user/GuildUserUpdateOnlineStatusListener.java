@@ -15,16 +15,17 @@ public class GuildUserUpdateOnlineStatusListener extends ListenerAdapter {
 
     @Override
     public void onUserUpdateOnlineStatus(@NotNull UserUpdateOnlineStatusEvent event) {
-        LupoServer server = LupoServer.getByGuild(event.getGuild());
-        LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
+        LupoServer.loadByGuild(event.getGuild()).thenAccept(server -> {
+            LupoPlugin plugin = LupoBot.getInstance().getPlugin("logging");
 
-        EmbedBuilder builder = new EmbedBuilder();
-        builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
-                null, event.getMember().getUser().getAvatarUrl());
-        builder.addField(server.translate(plugin, "logging_onlinestatus-old"), event.getOldValue().name(), false);
-        builder.addField(server.translate(plugin, "logging_onlinestatus-new"), event.getNewValue().name(), false);
-        builder.setColor(LupoColor.ORANGE.getColor());
+            EmbedBuilder builder = new EmbedBuilder();
+            builder.setAuthor(event.getMember().getUser().getAsTag() + " (" + event.getMember().getId() + ")",
+                    null, event.getMember().getUser().getAvatarUrl());
+            builder.addField(server.translate(plugin, "logging_onlinestatus-old"), event.getOldValue().name(), false);
+            builder.addField(server.translate(plugin, "logging_onlinestatus-new"), event.getNewValue().name(), false);
+            builder.setColor(LupoColor.ORANGE.getColor());
 
-        LupoLoggingPlugin.getInstance().sendLog(LogEvent.ONLINESTATUS_UPDATE, event.getGuild(), builder);
+            LupoLoggingPlugin.getInstance().sendLog(LogEvent.ONLINESTATUS_UPDATE, event.getGuild(), builder);
+        });
     }
-}
\ No newline at end of file
+}
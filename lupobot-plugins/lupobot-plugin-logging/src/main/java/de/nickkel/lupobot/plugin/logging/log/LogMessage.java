@@ -1,10 +1,12 @@
 package de.nickkel.lupobot.plugin.logging.log;
 
-import com.mongodb.*;
+import com.mongodb.BasicDBObject;
 import de.nickkel.lupobot.core.LupoBot;
 import lombok.Getter;
 import net.dv8tion.jda.api.entities.Message;
 
+import java.util.concurrent.CompletableFuture;
+
 public class LogMessage {
 
     @Getter
@@ -12,45 +14,33 @@ public class LogMessage {
     @Getter
     public long id;
 
-    public LogMessage(long messageId, boolean createIfNotExists) {
+    private LogMessage(long messageId, BasicDBObject data) {
         this.id = messageId;
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("messages");
-        DBObject query = new BasicDBObject("_id", messageId);
-        DBCursor cursor = collection.find(query);
-        try {
-            if (createIfNotExists) {
-                BasicDBObject dbObject = new BasicDBObject();
-                dbObject.append("_id", messageId);
-                collection.insert(dbObject);
-                this.data = dbObject;
-            } else {
-                this.data = (BasicDBObject) cursor.one();
-            }
-        } catch (DuplicateKeyException e) {
-            this.data = (BasicDBObject) cursor.one();
+        this.data = data;
+    }
+
+    public static CompletableFuture<LogMessage> load(long messageId, boolean createIfNotExists) {
+        CompletableFuture<BasicDBObject> future;
+        if (createIfNotExists) {
+            future = LupoBot.getInstance().getDataStore().findOrCreate("messages", new BasicDBObject("_id", messageId));
+        } else {
+            future = LupoBot.getInstance().getDataStore().findOne("messages", new BasicDBObject("_id", messageId));
         }
+        return future.thenApplyAsync(data -> data != null ? new LogMessage(messageId, data) : null, LupoBot.getInstance().getDataService());
     }
 
-    public void update(Message message) {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("messages");
-        DBObject query = new BasicDBObject("_id", message.getIdLong());
-        this.data.append("content", message.getContentRaw());
-        this.data.append("authorAvatarUrl", message.getAuthor().getAvatarUrl());
-        this.data.append("authorId", message.getAuthor().getIdLong());
-        this.data.append("authorAsTag", message.getAuthor().getAsTag());
-        collection.update(query, this.data);
+    public CompletableFuture<Void> update(Message message) {
+        BasicDBObject set = new BasicDBObject();
+        set.append("content", message.getContentRaw());
+        set.append("authorAvatarUrl", message.getAuthor().getAvatarUrl());
+        set.append("authorId", message.getAuthor().getIdLong());
+        set.append("authorAsTag", message.getAuthor().getAsTag());
+        this.data.putAll(set.toMap());
+        return LupoBot.getInstance().getDataStore().update("messages", new BasicDBObject("_id", message.getIdLong()), new BasicDBObject("$set", set));
     }
 
-    public void delete() {
-        DB database = LupoBot.getInstance().getMongoClient().getDB(LupoBot.getInstance().getConfig().getJsonElement("database")
-                .getAsJsonObject().get("name").getAsString());
-        DBCollection collection = database.getCollection("messages");
-        DBObject query = new BasicDBObject("_id", this.id);
-        collection.remove(query);
+    public CompletableFuture<Void> delete() {
+        return LupoBot.getInstance().getDataStore().delete("messages", new BasicDBObject("_id", this.id));
     }
 
     public String get(String key) {
@@ -31,12 +31,9 @@ public class MusicServer {
     private final AudioPlayerSendHandler sendHandler;
     @Getter
     private final Guild guild;
-    @Getter
-    private final LupoServer server;
 
     public MusicServer(AudioPlayerManager manager, Guild guild) {
         this.guild = guild;
-        this.server = LupoServer.getByGuild(this.guild);
         this.audioPlayer = manager.createPlayer();
         this.audioPlayer.setVolume(getVolume());
         this.scheduler = new TrackScheduler(this.audioPlayer, this);
@@ -44,8 +41,12 @@ public class MusicServer {
         this.sendHandler = new AudioPlayerSendHandler(this.audioPlayer);
     }
 
+    public LupoServer getServer() {
+        return LupoServer.getByGuild(this.guild);
+    }
+
     public int getVolume() {
-        return Integer.parseInt(String.valueOf(this.server.getPluginLong(LupoBot.getInstance().getPlugin(LupoMusicPlugin.getInstance().getInfo().name()), "volume")));
+        return Integer.parseInt(String.valueOf(this.getServer().getPluginLong(LupoBot.getInstance().getPlugin(LupoMusicPlugin.getInstance().getInfo().name()), "volume")));
     }
 
     public void play(LupoCommand command, CommandContext context, String trackUrl) {
@@ -92,12 +93,12 @@ public class MusicServer {
         AudioManager audioManager = this.guild.getAudioManager();
 
         if (!memberVoiceState.inVoiceChannel()) {
-            context.getCommand().send(context, this.server.translate(context.getPlugin(), "music_member-not-in-voicechannel",
+            context.getCommand().send(context, this.getServer().translate(context.getPlugin(), "music_member-not-in-voicechannel",
                     context.getMember().getAsMention()));
             return false;
         }
         if (selfVoiceState.inVoiceChannel() && memberVoiceState.getChannel().getIdLong() != selfVoiceState.getChannel().getIdLong()) {
-            context.getCommand().send(context, this.server.translate(context.getPlugin(), "music_bot-already-in-voicechannel",
+            context.getCommand().send(context, this.getServer().translate(context.getPlugin(), "music_bot-already-in-voicechannel",
                     context.getMember().getAsMention()));
             return false;
         }
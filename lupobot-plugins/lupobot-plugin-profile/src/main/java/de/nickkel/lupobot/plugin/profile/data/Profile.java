@@ -8,6 +8,7 @@ import de.nickkel.lupobot.plugin.profile.enums.Badge;
 import de.nickkel.lupobot.plugin.profile.enums.Gender;
 import lombok.Getter;
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.User;
 
 import java.time.LocalDate;
 import java.time.Period;
@@ -18,18 +19,21 @@ import java.util.List;
 
 public class Profile {
 
-    @Getter
-    private final LupoUser user;
+    private final User discordUser;
     @Getter
     private final LupoPlugin plugin;
 
     public Profile(Member member) {
         this.plugin = LupoBot.getInstance().getPlugin("profile");
-        this.user = LupoUser.getByMember(member);
+        this.discordUser = member.getUser();
+    }
+
+    public LupoUser getUser() {
+        return LupoUser.getByDiscordUser(this.discordUser);
     }
 
     public List<Badge> getBadges() {
-        BasicDBList dbList = (BasicDBList) this.user.getPluginData(this.plugin, "badges");
+        BasicDBList dbList = (BasicDBList) this.getUser().getPluginData(this.plugin, "badges");
         List<Badge> badges = new ArrayList<>();
         for (Object name : dbList) {
             badges.add(Badge.valueOf((String) name));
@@ -38,30 +42,30 @@ public class Profile {
     }
 
     public void addBadge(Badge badge) {
-        BasicDBList dbList = (BasicDBList) this.user.getPluginData(this.plugin, "badges");
+        BasicDBList dbList = (BasicDBList) this.getUser().getPluginData(this.plugin, "badges");
         if (!dbList.contains(badge.toString())) {
             dbList.add(badge.toString());
-            this.user.appendPluginData(this.plugin, "badges", dbList);
+            this.getUser().appendPluginData(this.plugin, "badges", dbList);
         }
     }
 
     public void removeBadge(Badge badge) {
-        BasicDBList dbList = (BasicDBList) this.user.getPluginData(this.plugin, "badges");
+        BasicDBList dbList = (BasicDBList) this.getUser().getPluginData(this.plugin, "badges");
         dbList.remove(badge.toString());
-        this.user.appendPluginData(this.plugin, "badges", dbList);
+        this.getUser().appendPluginData(this.plugin, "badges", dbList);
     }
 
     public String getStatus() {
-        String status = (String) this.user.getPluginData(this.plugin, "status");
-        return (String) this.user.getPluginData(this.plugin, "status");
+        String status = (String) this.getUser().getPluginData(this.plugin, "status");
+        return (String) this.getUser().getPluginData(this.plugin, "status");
     }
 
     public void setStatus(String status) {
-        this.user.appendPluginData(this.plugin, "status", status);
+        this.getUser().appendPluginData(this.plugin, "status", status);
     }
 
     public Gender getGender() {
-        String gender = (String) this.user.getPluginData(this.plugin, "gender");
+        String gender = (String) this.getUser().getPluginData(this.plugin, "gender");
         if (gender != null) {
             return Gender.valueOf(gender);
         }
@@ -69,16 +73,16 @@ public class Profile {
     }
 
     public void setGender(Gender gender) {
-        this.user.appendPluginData(this.plugin, "gender", gender.toString());
+        this.getUser().appendPluginData(this.plugin, "gender", gender.toString());
     }
 
     public String getBirthday() {
-        return (String) this.user.getPluginData(this.plugin, "birthday");
+        return (String) this.getUser().getPluginData(this.plugin, "birthday");
     }
 
     public void setBirthday(String date) {
         if (isValidDate(date)) {
-          this.user.appendPluginData(this.plugin, "birthday", date);
+          this.getUser().appendPluginData(this.plugin, "birthday", date);
         }
     }
 
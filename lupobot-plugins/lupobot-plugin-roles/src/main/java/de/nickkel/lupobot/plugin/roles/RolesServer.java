@@ -20,18 +20,19 @@ public class RolesServer {
     @Getter
     private final Guild guild;
     @Getter
-    private final LupoServer server;
-    @Getter
     private final LupoPlugin plugin;
 
     public RolesServer(Guild guild) {
         this.plugin = LupoBot.getInstance().getPlugin("roles");
         this.guild = guild;
-        this.server = LupoServer.getByGuild(guild);
+    }
+
+    public LupoServer getServer() {
+        return LupoServer.getByGuild(this.guild);
     }
 
     public void addReactionRoleMessage(Message message, Map<String, Long> roles) {
-        BasicDBObject reactionRoles = (BasicDBObject) this.server.getPluginData(this.plugin, "reactionRoles");
+        BasicDBObject reactionRoles = (BasicDBObject) this.getServer().getPluginData(this.plugin, "reactionRoles");
         BasicDBObject reactionRole = new BasicDBObject();
 
         for (String emoji : roles.keySet()) {
@@ -39,18 +40,19 @@ public class RolesServer {
             message.addReaction(emoji).queue();
         }
         reactionRoles.append(message.getId(), reactionRole);
+        this.getServer().markDirty(this.plugin, "reactionRoles." + message.getId());
     }
 
     public List<Role> getSelfAssignRoles() {
         List<Role> roles = new ArrayList<>();
         BasicDBList dbList = new BasicDBList();
-        dbList.addAll((ArrayList) this.server.getPluginData(this.plugin, "selfAssignRoles"));
+        dbList.addAll((ArrayList) this.getServer().getPluginData(this.plugin, "selfAssignRoles"));
         for (Object id : dbList) {
             if (this.guild.getRoleById((long) id) != null) {
                 roles.add(this.guild.getRoleById((long) id));
             } else { // remove role if it doesn't exist anymore
                 dbList.remove(id);
-                this.server.appendPluginData(this.plugin, "selfAssignRoles", dbList);
+                this.getServer().appendPluginData(this.plugin, "selfAssignRoles", dbList);
             }
         }
         return roles;
@@ -44,6 +44,7 @@ public class Ticket {
     public void delete() {
         this.server.getTickets().remove(this.channel);
         ((BasicDBObject) this.server.getServer().getPluginData(this.server.getPlugin(), "tickets")).remove(String.valueOf(this.channel));
+        this.server.getServer().markDirty(this.server.getPlugin(), "tickets." + this.channel);
         this.server.getGuild().getTextChannelById(this.channel).delete().queue();
     }
 
@@ -172,7 +173,7 @@ public class Ticket {
         ticketObject.append("assignee", -1);
 
         tickets.append(channel.getId(), ticketObject);
-        server.appendPluginData(ticketServer.getPlugin(), "tickets", tickets);
+        server.markDirty(ticketServer.getPlugin(), "tickets." + channel.getId());
 
         Ticket ticket = Ticket.getByChannel(channel);
         ticket.sendNotify(new EmbedBuilder()
@@ -200,6 +201,7 @@ public class Ticket {
         BasicDBObject dbObject = ((BasicDBObject) ((BasicDBObject) this.server.getServer().getPluginData(LupoBot.getInstance().getPlugin(LupoTicketPlugin.getInstance().getInfo().name()),
                 "tickets")).get(String.valueOf(this.channel))).append(key, val);
         dbObject.append(key, val);
+        this.server.getServer().markDirty(this.server.getPlugin(), "tickets." + this.channel + "." + key);
     }
 
     private Object getTicketData(String key) {
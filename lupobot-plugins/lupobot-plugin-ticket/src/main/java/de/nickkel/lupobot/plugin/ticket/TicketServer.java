@@ -18,8 +18,6 @@ public class TicketServer {
     @Getter
     private final Guild guild;
     @Getter
-    private final LupoServer server;
-    @Getter
     private final LupoPlugin plugin;
     @Getter
     private Map<Long, Ticket> tickets = new HashMap<>();
@@ -27,38 +25,41 @@ public class TicketServer {
     public TicketServer(Guild guild) {
         this.plugin = LupoBot.getInstance().getPlugin("ticket");
         this.guild = guild;
-        this.server = LupoServer.getByGuild(guild);
+    }
+
+    public LupoServer getServer() {
+        return LupoServer.getByGuild(this.guild);
     }
 
     public int getLimitAmount() {
-        return (int) this.server.getPluginData(this.plugin, "limitAmount");
+        return (int) this.getServer().getPluginData(this.plugin, "limitAmount");
     }
 
     public boolean isVisibleEveryone() {
-        return (boolean) this.server.getPluginData(this.plugin, "visibleEveryone");
+        return (boolean) this.getServer().getPluginData(this.plugin, "visibleEveryone");
     }
 
     public List<Role> getSupportTeamRoles() {
         List<Role> roles = new ArrayList<>();
         BasicDBList dbList = new BasicDBList();
-        dbList.addAll((ArrayList) this.server.getPluginData(this.plugin, "supportTeamRoles"));
+        dbList.addAll((ArrayList) this.getServer().getPluginData(this.plugin, "supportTeamRoles"));
         for (Object id : dbList) {
             if (this.guild.getRoleById((long) id) != null) {
                 roles.add(this.guild.getRoleById((long) id));
             } else { // remove role if it doesn't exist anymore
                 dbList.remove(id);
-                this.server.appendPluginData(this.plugin, "supportTeamRoles", dbList);
+                this.getServer().appendPluginData(this.plugin, "supportTeamRoles", dbList);
             }
         }
         return roles;
     }
 
     public long getCreationMessage() {
-        return this.server.getPluginLong(this.plugin, "creationMessage");
+        return this.getServer().getPluginLong(this.plugin, "creationMessage");
     }
 
     public TextChannel getNotifyChannel() {
-        long notifyChannel = this.server.getPluginLong(this.plugin, "notifyChannel");
+        long notifyChannel = this.getServer().getPluginLong(this.plugin, "notifyChannel");
         if (notifyChannel != -1) {
             if (this.guild.getTextChannelById(notifyChannel) != null) {
                 return this.guild.getTextChannelById(notifyChannel);
@@ -68,7 +69,7 @@ public class TicketServer {
     }
 
     public Category getCategory(TicketState state) {
-        long category = this.server.getPluginLong(this.plugin, state.getKey());
+        long category = this.getServer().getPluginLong(this.plugin, state.getKey());
         if (category != -1) {
             return this.guild.getCategoryById(category);
         }